@@ -0,0 +1,77 @@
+package com.admob;
+
+import java.util.Random;
+
+/**
+ * Deterministic stand-in for the ads SDK.
+ *
+ * Each load fills with probability {@code fillRate} and otherwise fails
+ * with {@code errorCode}; the draws come from a seeded {@link Random}, so a
+ * given seed always produces the same sequence of outcomes. With a latency
+ * of zero the answer is delivered synchronously inside {@code load}, which
+ * is what the benchmarks use to measure our own code and nothing else;
+ * otherwise it is delivered through the timer after the latency passes.
+ */
+final class FakeAdLoader<A> implements AdLoader<A> {
+
+    /** AdMob's "no fill" error code. */
+    static final int ERROR_NO_FILL = 3;
+
+    interface Factory<A> {
+        A create(String adUnitId);
+    }
+
+    private final Factory<A> factory;
+    private final HedgedWaterfall.Timer timer;
+    private final Random random;
+    private long latencyMs;
+    private double fillRate = 1.0;
+    private int errorCode = ERROR_NO_FILL;
+    private long loads;
+
+    FakeAdLoader(Factory<A> factory, HedgedWaterfall.Timer timer, long seed) {
+        this.factory = factory;
+        this.timer = timer;
+        this.random = new Random(seed);
+    }
+
+    FakeAdLoader<A> latency(long latencyMs) {
+        this.latencyMs = Math.max(0, latencyMs);
+        return this;
+    }
+
+    FakeAdLoader<A> fillRate(double fillRate) {
+        this.fillRate = fillRate;
+        return this;
+    }
+
+    FakeAdLoader<A> errorCode(int errorCode) {
+        this.errorCode = errorCode;
+        return this;
+    }
+
+    long loads() {
+        return loads;
+    }
+
+    @Override
+    public void load(final String adUnitId, final Callback<A> callback) {
+        loads++;
+        final boolean fill = random.nextDouble() < fillRate;
+        Runnable answer = new Runnable() {
+            @Override
+            public void run() {
+                if (fill) {
+                    callback.onLoaded(factory.create(adUnitId));
+                } else {
+                    callback.onFailed(errorCode, "No fill (fake error " + errorCode + ")");
+                }
+            }
+        };
+        if (latencyMs == 0) {
+            answer.run();
+        } else {
+            timer.schedule(answer, latencyMs);
+        }
+    }
+}
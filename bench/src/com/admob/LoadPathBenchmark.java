@@ -0,0 +1,72 @@
+package com.admob;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/** Retry bookkeeping, the load scheduler and the slot state machine on their hot paths. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class LoadPathBenchmark {
+
+    private RetryPolicy retry;
+    private AdSlotState state;
+
+    private final AdLoadScheduler.Task finishAtOnce = new AdLoadScheduler.Task() {
+        @Override
+        public void start(AdLoadScheduler.Ticket ticket) {
+            ticket.finish();
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        retry = new RetryPolicy();
+        // Keep the breaker out of the way so every iteration takes the backoff path.
+        retry.configureBreaker(Integer.MAX_VALUE, 0);
+        state = new AdSlotState();
+    }
+
+    @Benchmark
+    public long retryFailureThenSuccess() {
+        long delay = retry.onFailure();
+        retry.onSuccess();
+        return delay + retry.waitMs();
+    }
+
+    @Benchmark
+    public int scheduleOneLoad() {
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_INTERSTITIAL, false, finishAtOnce);
+        return AdLoadScheduler.inFlightCount();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int scheduleContended() {
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_REWARDED, true, finishAtOnce);
+        return AdLoadScheduler.queuedCount();
+    }
+
+    /** IDLE → LOADING → LOADED → SHOWING and back, as one load-and-show does. */
+    @Benchmark
+    public int slotLoadShowCycle() {
+        state.transition(AdSlotState.IDLE, AdSlotState.LOADING);
+        state.settle(1, 0);
+        state.transition(AdSlotState.LOADED, AdSlotState.SHOWING);
+        state.endShow(0, 0);
+        return state.get();
+    }
+
+    /** An illegal transition, such as LoadAd while SHOWING, refused by the table before any CAS. */
+    @Benchmark
+    public boolean slotRejectedTransition() {
+        return state.transition(AdSlotState.SHOWING, AdSlotState.LOADING);
+    }
+}
@@ -0,0 +1,63 @@
+package com.admob;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link HedgedWaterfall.Timer} on a virtual clock that only moves when
+ * {@link #advance} is called, so timed paths run deterministically and as
+ * fast as the CPU allows.
+ */
+final class ManualTimer implements HedgedWaterfall.Timer {
+
+    private static final class Scheduled {
+        final Runnable task;
+        final long at;
+
+        Scheduled(Runnable task, long at) {
+            this.task = task;
+            this.at = at;
+        }
+    }
+
+    private final List<Scheduled> pending = new ArrayList<>();
+    private long now;
+
+    @Override
+    public void schedule(Runnable task, long delayMs) {
+        pending.add(new Scheduled(task, now + delayMs));
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            if (pending.get(i).task == task) {
+                pending.remove(i);
+            }
+        }
+    }
+
+    /** Moves the clock forward, running every task that falls due in timestamp order. */
+    void advance(long ms) {
+        long until = now + ms;
+        while (true) {
+            Scheduled next = null;
+            for (Scheduled s : pending) {
+                if (s.at <= until && (next == null || s.at < next.at)) {
+                    next = s;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            pending.remove(next);
+            now = next.at;
+            next.task.run();
+        }
+        now = until;
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+}
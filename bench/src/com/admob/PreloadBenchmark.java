@@ -0,0 +1,91 @@
+package com.admob;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Preload pool refills and hedged waterfall runs against {@link FakeAdLoader}. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PreloadBenchmark {
+
+    private static final String[] UNITS = {"unit-high", "unit-mid", "unit-low"};
+
+    @Param({"1", "3"})
+    public int capacity;
+
+    @Param({"1.0", "0.5"})
+    public double fillRate;
+
+    private AdPreloadPool<Object> pool;
+    private ManualTimer timer;
+    private HedgedWaterfall<Object> waterfall;
+    private final Object[] winner = new Object[1];
+
+    private final HedgedWaterfall.Listener<Object> listener = new HedgedWaterfall.Listener<Object>() {
+        @Override
+        public void onLoaded(Object ad, String adUnitId) {
+            winner[0] = ad;
+        }
+
+        @Override
+        public void onFailed(String message) {
+            winner[0] = null;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        timer = new ManualTimer();
+        final FakeAdLoader.Factory<Object> ads = new FakeAdLoader.Factory<Object>() {
+            @Override
+            public Object create(String adUnitId) {
+                return adUnitId;
+            }
+        };
+        final FakeAdLoader<Object> instant = new FakeAdLoader<>(ads, timer, 42).fillRate(fillRate);
+        pool = new AdPreloadPool<>(AdPreloadPool.FULL_SCREEN_TTL_MS, new AdPreloadPool.Loader<Object>() {
+            @Override
+            public void load(final AdPreloadPool<Object> pool) {
+                instant.load("unit", new AdLoader.Callback<Object>() {
+                    @Override
+                    public void onLoaded(Object ad) {
+                        pool.offer(ad);
+                    }
+
+                    @Override
+                    public void onFailed(int code, String message) {
+                        pool.loadFailed();
+                    }
+                });
+            }
+        });
+        pool.setCapacity(capacity);
+        pool.fill();
+        waterfall = new HedgedWaterfall<>(
+                new FakeAdLoader<>(ads, timer, 7).fillRate(fillRate).latency(400), timer);
+    }
+
+    /** One show's worth of pool traffic: take the oldest ad and top the pool back up. */
+    @Benchmark
+    public Object pollAndRefill() {
+        Object ad = pool.poll();
+        pool.fill();
+        return ad;
+    }
+
+    /** A full three-unit waterfall on virtual time, including hedges and the extra wait. */
+    @Benchmark
+    public Object waterfallRun() {
+        waterfall.run(UNITS, listener);
+        timer.advance(10000);
+        return winner[0];
+    }
+}
@@ -0,0 +1,128 @@
+package com.admob;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide cap on how many loaded full-screen ads are kept at once.
+ *
+ * Every preload pool registers here. When the total goes over the budget,
+ * or Android reports memory pressure, the coldest ad (the one loaded
+ * longest ago, and so closest to expiring) is dropped from whichever pool
+ * holds it. {@link #fillLimit} keeps pools from loading ads the budget
+ * would only throw away, while always letting each pool hold one.
+ */
+final class AdCacheBudget {
+
+    static final int DEFAULT_MAX_ADS = 4;
+
+    private static final Object lock = new Object();
+    private static final List<AdPreloadPool<?>> pools = new ArrayList<>();
+    private static int maxAds = DEFAULT_MAX_ADS;
+    private static boolean watchingMemory;
+
+    private AdCacheBudget() {
+    }
+
+    static void register(Context context, AdPreloadPool<?> pool) {
+        synchronized (lock) {
+            pools.add(pool);
+            if (watchingMemory) {
+                return;
+            }
+            watchingMemory = true;
+        }
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                    trimTo(1);
+                } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    evictColdest();
+                }
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimTo(1);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+        });
+    }
+
+    static void unregister(AdPreloadPool<?> pool) {
+        synchronized (lock) {
+            pools.remove(pool);
+        }
+    }
+
+    static void setMaxAds(int max) {
+        synchronized (lock) {
+            maxAds = Math.max(1, max);
+        }
+        enforce();
+    }
+
+    static int cachedCount() {
+        synchronized (lock) {
+            int total = 0;
+            for (AdPreloadPool<?> pool : pools) {
+                total += pool.size();
+            }
+            return total;
+        }
+    }
+
+    /** How many ads, ready or loading, {@code pool} may have without pushing the total over budget. */
+    static int fillLimit(AdPreloadPool<?> pool) {
+        synchronized (lock) {
+            int used = 0;
+            for (AdPreloadPool<?> p : pools) {
+                used += p.size() + p.inFlight();
+            }
+            int own = pool.size() + pool.inFlight();
+            return Math.max(1, own + maxAds - used);
+        }
+    }
+
+    /** Call after an ad is added to a pool; evicts until the total is within budget. */
+    static void enforce() {
+        int max;
+        synchronized (lock) {
+            max = maxAds;
+        }
+        trimTo(max);
+    }
+
+    private static void trimTo(int max) {
+        while (cachedCount() > max && evictColdest()) {
+            // keep evicting
+        }
+    }
+
+    private static boolean evictColdest() {
+        AdPreloadPool<?> coldest = null;
+        synchronized (lock) {
+            long oldest = Long.MAX_VALUE;
+            for (AdPreloadPool<?> pool : pools) {
+                long loadedAt = pool.oldestLoadedAt();
+                if (loadedAt < oldest) {
+                    oldest = loadedAt;
+                    coldest = pool;
+                }
+            }
+        }
+        // Evicted outside our lock; the pool runs its eviction listener.
+        if (coldest == null || !coldest.evictOldest()) {
+            return false;
+        }
+        AdTrace.record("budget", "evicted", null);
+        return true;
+    }
+}
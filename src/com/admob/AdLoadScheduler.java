@@ -0,0 +1,249 @@
+package com.admob;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide queue that every ad load goes through.
+ *
+ * At most {@code maxConcurrent} loads are in flight at once, and queued
+ * loads start in priority order (App Open, rewarded, interstitial, banner
+ * by default). A load marked as a preload, meaning its component already
+ * has something to show, is held back while any higher-priority load is
+ * queued or in flight, so top-ups never compete with a first ad that
+ * matters more.
+ *
+ * Each started load gets a {@link Ticket} that must be finished when the
+ * SDK answers. A ticket that is never finished is reclaimed after
+ * {@link #LOAD_TIMEOUT_MS} so a lost callback cannot wedge the queue; a
+ * timer wakes the queue up for that even when nothing else is submitted.
+ * Tasks may therefore be started off the main thread.
+ */
+final class AdLoadScheduler {
+
+    static final int PRIORITY_APP_OPEN = 0;
+    static final int PRIORITY_REWARDED = 1;
+    static final int PRIORITY_INTERSTITIAL = 2;
+    static final int PRIORITY_BANNER = 3;
+    private static final int LEVELS = 4;
+
+    static final long LOAD_TIMEOUT_MS = 60000;
+
+    interface Task {
+        void start(Ticket ticket);
+    }
+
+    static final class Ticket {
+        final int priority;
+        final long startedAt;
+        private boolean finished;
+
+        Ticket(int priority, long startedAt) {
+            this.priority = priority;
+            this.startedAt = startedAt;
+        }
+
+        /** Releases this load's slot; safe to call more than once. */
+        void finish() {
+            AdLoadScheduler.finish(this);
+        }
+    }
+
+    private static final class Request {
+        final int priority;
+        final boolean preload;
+        final Task task;
+
+        Request(int priority, boolean preload, Task task) {
+            this.priority = priority;
+            this.preload = preload;
+            this.task = task;
+        }
+    }
+
+    private static final Object lock = new Object();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final ArrayDeque<Request>[] queues = new ArrayDeque[LEVELS];
+    private static final List<Ticket> inFlight = new ArrayList<>();
+    private static final int[] inFlightByPriority = new int[LEVELS];
+    private static int maxConcurrent = 2;
+    private static ScheduledExecutorService reclaimer;
+    private static final ThreadLocal<boolean[]> dispatching = new ThreadLocal<boolean[]>() {
+        @Override
+        protected boolean[] initialValue() {
+            return new boolean[1];
+        }
+    };
+    private static boolean reclaimScheduled;
+
+    private static final Runnable reclaimTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                reclaimScheduled = false;
+            }
+            dispatch();
+            synchronized (lock) {
+                scheduleReclaim();
+            }
+        }
+    };
+
+    static {
+        for (int i = 0; i < LEVELS; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    private AdLoadScheduler() {
+    }
+
+    static int clampPriority(int priority) {
+        return Math.max(0, Math.min(LEVELS - 1, priority));
+    }
+
+    static void setMaxConcurrent(int max) {
+        synchronized (lock) {
+            maxConcurrent = Math.max(1, max);
+        }
+        dispatch();
+    }
+
+    static void submit(int priority, boolean preload, Task task) {
+        synchronized (lock) {
+            queues[clampPriority(priority)].addLast(new Request(clampPriority(priority), preload, task));
+        }
+        dispatch();
+    }
+
+    static int inFlightCount() {
+        synchronized (lock) {
+            return inFlight.size();
+        }
+    }
+
+    static int queuedCount() {
+        synchronized (lock) {
+            int n = 0;
+            for (ArrayDeque<Request> queue : queues) {
+                n += queue.size();
+            }
+            return n;
+        }
+    }
+
+    private static void finish(Ticket ticket) {
+        synchronized (lock) {
+            if (ticket.finished) {
+                return;
+            }
+            release(ticket);
+            inFlight.remove(ticket);
+        }
+        dispatch();
+    }
+
+    private static void release(Ticket ticket) {
+        ticket.finished = true;
+        inFlightByPriority[ticket.priority]--;
+    }
+
+    private static void dispatch() {
+        boolean[] active = dispatching.get();
+        if (active[0]) {
+            // A task finished inside start(); the loop below on this thread picks up the freed slot.
+            return;
+        }
+        active[0] = true;
+        try {
+            drain();
+        } finally {
+            active[0] = false;
+        }
+    }
+
+    private static void drain() {
+        while (true) {
+            Request next;
+            Ticket ticket;
+            synchronized (lock) {
+                reclaimTimedOut();
+                if (inFlight.size() >= maxConcurrent) {
+                    return;
+                }
+                next = takeNext();
+                if (next == null) {
+                    return;
+                }
+                ticket = new Ticket(next.priority, AdPreloadPool.now());
+                inFlight.add(ticket);
+                inFlightByPriority[next.priority]++;
+                scheduleReclaim();
+            }
+            // Started outside the lock: the SDK may answer synchronously.
+            next.task.start(ticket);
+        }
+    }
+
+    private static Request takeNext() {
+        for (int p = 0; p < LEVELS; p++) {
+            Iterator<Request> it = queues[p].iterator();
+            while (it.hasNext()) {
+                Request request = it.next();
+                if (request.preload && higherPriorityActive(p)) {
+                    continue;
+                }
+                it.remove();
+                return request;
+            }
+        }
+        return null;
+    }
+
+    private static boolean higherPriorityActive(int priority) {
+        for (int p = 0; p < priority; p++) {
+            if (inFlightByPriority[p] > 0 || !queues[p].isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Wakes the queue when the oldest ticket times out. Callers hold the lock. */
+    private static void scheduleReclaim() {
+        if (reclaimScheduled || inFlight.isEmpty()) {
+            return;
+        }
+        reclaimScheduled = true;
+        long delay = inFlight.get(0).startedAt + LOAD_TIMEOUT_MS - AdPreloadPool.now();
+        if (reclaimer == null) {
+            reclaimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "AdLoadScheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        reclaimer.schedule(reclaimTask, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    private static void reclaimTimedOut() {
+        long now = AdPreloadPool.now();
+        Iterator<Ticket> it = inFlight.iterator();
+        while (it.hasNext()) {
+            Ticket ticket = it.next();
+            if (now - ticket.startedAt >= LOAD_TIMEOUT_MS) {
+                release(ticket);
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.admob;
+
+/**
+ * Loads a single ad for one ad unit ID.
+ *
+ * This is the seam between the components and the ads SDK: the components
+ * only ever load through an {@code AdLoader}, {@link GmsBackend} adapts the
+ * Play Services statics to it, and a fake implementation can stand in for
+ * it on a plain JVM.
+ */
+interface AdLoader<A> {
+
+    void load(String adUnitId, Callback<A> callback);
+
+    interface Callback<A> {
+        void onLoaded(A ad);
+
+        void onFailed(int code, String message);
+    }
+}
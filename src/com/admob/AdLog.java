@@ -0,0 +1,115 @@
+package com.admob;
+
+import android.util.Log;
+
+/**
+ * Leveled logging for all AdMob components.
+ *
+ * Messages are passed as a fixed prefix plus up to three parts and are only
+ * joined when their level is enabled, so a disabled level costs a single
+ * volatile read. Numbers have their own overloads so they are not boxed
+ * either. The level defaults to WARN and is set at runtime from the
+ * SetLogLevel block. Lifecycle events go to {@link AdTrace} instead, which
+ * records them whatever the level.
+ */
+final class AdLog {
+
+    static final int DEBUG = Log.DEBUG;
+    static final int INFO = Log.INFO;
+    static final int WARN = Log.WARN;
+    static final int ERROR = Log.ERROR;
+    static final int NONE = Log.ASSERT + 1;
+
+    private static volatile int level = WARN;
+
+    private AdLog() {
+    }
+
+    /** Accepts "debug", "info", "warn", "error" or "none"; anything else leaves the level unchanged. */
+    static void setLevel(String name) {
+        String value = name == null ? "" : name.trim().toLowerCase();
+        if (value.equals("debug")) {
+            level = DEBUG;
+        } else if (value.equals("info")) {
+            level = INFO;
+        } else if (value.equals("warn")) {
+            level = WARN;
+        } else if (value.equals("error")) {
+            level = ERROR;
+        } else if (value.equals("none")) {
+            level = NONE;
+        }
+    }
+
+    static void d(String tag, String msg) {
+        if (DEBUG >= level) {
+            Log.d(tag, msg);
+        }
+    }
+
+    static void d(String tag, String msg, Object a) {
+        if (DEBUG >= level) {
+            Log.d(tag, msg + a);
+        }
+    }
+
+    static void d(String tag, String msg, Object a, Object b) {
+        if (DEBUG >= level) {
+            Log.d(tag, msg + a + b);
+        }
+    }
+
+    static void d(String tag, String msg, Object a, Object b, Object c) {
+        if (DEBUG >= level) {
+            Log.d(tag, msg + a + b + c);
+        }
+    }
+
+    static void d(String tag, String msg, long a, Object b) {
+        if (DEBUG >= level) {
+            Log.d(tag, msg + a + b);
+        }
+    }
+
+    static void d(String tag, String msg, long a, Object b, Object c) {
+        if (DEBUG >= level) {
+            Log.d(tag, msg + a + b + c);
+        }
+    }
+
+    static void i(String tag, String msg, Object a) {
+        if (INFO >= level) {
+            Log.i(tag, msg + a);
+        }
+    }
+
+    static void i(String tag, String msg, long a, Object b) {
+        if (INFO >= level) {
+            Log.i(tag, msg + a + b);
+        }
+    }
+
+    static void w(String tag, String msg) {
+        if (WARN >= level) {
+            Log.w(tag, msg);
+        }
+    }
+
+    static void w(String tag, String msg, Object a) {
+        if (WARN >= level) {
+            Log.w(tag, msg + a);
+        }
+    }
+
+    static void e(String tag, String msg) {
+        if (ERROR >= level) {
+            Log.e(tag, msg);
+        }
+    }
+
+    static void e(String tag, String msg, Object a) {
+        if (ERROR >= level) {
+            Log.e(tag, msg + a);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.admob;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-format, per-ad-unit load and show metrics.
+ *
+ * Lookups after the first for a given unit are plain map reads, and every
+ * record call only bumps atomics, so recording from SDK callbacks does not
+ * allocate. Latencies go into log-linear histograms (four buckets per
+ * power of two) from which p50/p95/p99 are estimated.
+ */
+final class AdMetrics {
+
+    static final String INTERSTITIAL = "interstitial";
+    static final String REWARDED = "rewarded";
+    static final String APP_OPEN = "app_open";
+    static final String BANNER = "banner";
+
+    private static final Map<String, Map<String, Stats>> formats = new ConcurrentHashMap<>();
+
+    private AdMetrics() {
+    }
+
+    static Stats forUnit(String format, String adUnitId) {
+        Map<String, Stats> units = formats.get(format);
+        if (units == null) {
+            formats.putIfAbsent(format, new ConcurrentHashMap<String, Stats>());
+            units = formats.get(format);
+        }
+        String key = adUnitId == null ? "" : adUnitId;
+        Stats stats = units.get(key);
+        if (stats == null) {
+            units.putIfAbsent(key, new Stats());
+            stats = units.get(key);
+        }
+        return stats;
+    }
+
+    /** Wraps {@code loader} so every load it makes is counted under {@code format}. */
+    static <A> AdLoader<A> metered(final String format, final AdLoader<A> loader) {
+        return new AdLoader<A>() {
+            @Override
+            public void load(String adUnitId, final Callback<A> callback) {
+                final Stats stats = forUnit(format, adUnitId);
+                final long startedAt = AdPreloadPool.now();
+                stats.recordRequest();
+                AdTrace.record(format, "request", adUnitId);
+                loader.load(adUnitId, new Callback<A>() {
+                    private boolean answered;
+
+                    @Override
+                    public void onLoaded(A ad) {
+                        if (!answered) {
+                            answered = true;
+                            stats.recordFill(AdPreloadPool.now() - startedAt);
+                            AdTrace.record(format, "fill", adUnitId);
+                        }
+                        callback.onLoaded(ad);
+                    }
+
+                    @Override
+                    public void onFailed(int code, String message) {
+                        if (!answered) {
+                            answered = true;
+                            stats.recordFailure(AdPreloadPool.now() - startedAt);
+                            AdTrace.record(format, "no_fill", message);
+                        }
+                        callback.onFailed(code, message);
+                    }
+                });
+            }
+        };
+    }
+
+    static void reset(String format) {
+        formats.remove(format);
+    }
+
+    /** One line per ad unit of {@code format}, for a quick look from blocks. */
+    static String summary(String format) {
+        Map<String, Stats> units = formats.get(format);
+        if (units == null || units.isEmpty()) {
+            return format + ": no requests yet";
+        }
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Stats> entry : units.entrySet()) {
+            Stats s = entry.getValue();
+            if (out.length() > 0) {
+                out.append('\n');
+            }
+            out.append(format).append(' ').append(entry.getKey())
+                    .append(": requests=").append(s.requests.get())
+                    .append(" fillRate=").append(Math.round(s.fillRate() * 100)).append('%')
+                    .append(" load p50/p95/p99=").append(s.loadLatency.percentile(0.50))
+                    .append('/').append(s.loadLatency.percentile(0.95))
+                    .append('/').append(s.loadLatency.percentile(0.99)).append("ms")
+                    .append(" shows=").append(s.shows.get())
+                    .append(" show p50=").append(s.showLatency.percentile(0.50)).append("ms")
+                    .append(" loadToShow p50=").append(s.loadToShow.percentile(0.50)).append("ms");
+        }
+        return out.toString();
+    }
+
+    /** Every format and unit as a JSON object keyed by format, then ad unit ID. */
+    static String toJson() {
+        StringBuilder out = new StringBuilder("{");
+        boolean firstFormat = true;
+        for (Map.Entry<String, Map<String, Stats>> format : formats.entrySet()) {
+            if (!firstFormat) {
+                out.append(',');
+            }
+            firstFormat = false;
+            quote(out, format.getKey()).append(":{");
+            boolean firstUnit = true;
+            for (Map.Entry<String, Stats> unit : format.getValue().entrySet()) {
+                if (!firstUnit) {
+                    out.append(',');
+                }
+                firstUnit = false;
+                quote(out, unit.getKey()).append(':');
+                unit.getValue().appendJson(out);
+            }
+            out.append('}');
+        }
+        return out.append('}').toString();
+    }
+
+    private static StringBuilder quote(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    static final class Stats {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong fills = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong shows = new AtomicLong();
+        final Histogram loadLatency = new Histogram();
+        final Histogram showLatency = new Histogram();
+        final Histogram loadToShow = new Histogram();
+
+        void recordRequest() {
+            requests.incrementAndGet();
+        }
+
+        void recordFill(long latencyMs) {
+            fills.incrementAndGet();
+            loadLatency.record(latencyMs);
+        }
+
+        void recordFailure(long latencyMs) {
+            failures.incrementAndGet();
+            loadLatency.record(latencyMs);
+        }
+
+        /** {@code showLatencyMs}: ShowAd call to ad on screen. {@code ageMs}: ad load to ShowAd. */
+        void recordShow(long showLatencyMs, long ageMs) {
+            shows.incrementAndGet();
+            showLatency.record(showLatencyMs);
+            loadToShow.record(ageMs);
+        }
+
+        double fillRate() {
+            long n = requests.get();
+            return n == 0 ? 0 : (double) fills.get() / n;
+        }
+
+        void appendJson(StringBuilder out) {
+            out.append("{\"requests\":").append(requests.get())
+                    .append(",\"fills\":").append(fills.get())
+                    .append(",\"failures\":").append(failures.get())
+                    .append(",\"fillRate\":").append(Math.round(fillRate() * 1000) / 1000.0)
+                    .append(",\"shows\":").append(shows.get())
+                    .append(",\"loadLatencyMs\":");
+            loadLatency.appendJson(out);
+            out.append(",\"showLatencyMs\":");
+            showLatency.appendJson(out);
+            out.append(",\"loadToShowMs\":");
+            loadToShow.appendJson(out);
+            out.append('}');
+        }
+    }
+
+    /** Log-linear latency histogram in milliseconds; record() is lock- and allocation-free. */
+    static final class Histogram {
+        private static final int LINEAR = 16;
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = LINEAR + (40 - 4) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong total = new AtomicLong();
+
+        void record(long valueMs) {
+            counts.incrementAndGet(bucket(Math.max(0, valueMs)));
+            total.incrementAndGet();
+        }
+
+        /** Estimated value at quantile {@code q}, or -1 when nothing was recorded. */
+        long percentile(double q) {
+            long n = total.get();
+            if (n == 0) {
+                return -1;
+            }
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return midpoint(i);
+                }
+            }
+            return midpoint(BUCKETS - 1);
+        }
+
+        void appendJson(StringBuilder out) {
+            out.append("{\"count\":").append(total.get())
+                    .append(",\"p50\":").append(percentile(0.50))
+                    .append(",\"p95\":").append(percentile(0.95))
+                    .append(",\"p99\":").append(percentile(0.99))
+                    .append('}');
+        }
+
+        static int bucket(long v) {
+            if (v < LINEAR) {
+                return (int) v;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            int sub = (int) (v >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            int index = LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+            return Math.min(index, BUCKETS - 1);
+        }
+
+        static long midpoint(int index) {
+            if (index < LINEAR) {
+                return index;
+            }
+            int exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+            int sub = (index - LINEAR) % SUB_BUCKETS;
+            long width = 1L << (exponent - 2);
+            long low = (1L << exponent) + sub * width;
+            return low + width / 2;
+        }
+    }
+}
@@ -1,13 +1,10 @@
 package com.admob;
 
-import android.app.Activity;
-import android.util.Log;
+import android.os.SystemClock;
 import com.google.appinventor.components.annotations.*;
 import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.runtime.*;
-import com.google.android.gms.ads.*;
 import com.google.android.gms.ads.appopen.AppOpenAd;
-import com.google.android.gms.ads.appopen.AppOpenAd.AppOpenAdLoadCallback;
 
 @DesignerComponent(
     version = 1,
@@ -19,80 +16,105 @@ import com.google.android.gms.ads.appopen.AppOpenAd.AppOpenAdLoadCallback;
 @SimpleObject(external = true)
 @UsesPermissions(permissionNames = "android.permission.INTERNET, android.permission.ACCESS_NETWORK_STATE")
 @UsesLibraries(libraries = "play-services-ads-lite.jar")
-public class AdMobAppOpen extends AndroidNonvisibleComponent {
-    private final Activity activity;
-    private AppOpenAd appOpenAd;
-    private String adUnitId = "";
-    private boolean testMode = true;
+public class AdMobAppOpen extends AdMobFullScreenAd implements OnPauseListener, OnResumeListener {
+    private final long createdAt;
+    private boolean autoShow = false;
+    private int coldStartBudgetMs = 0;
+    private boolean coldStartPending = true;
+    private boolean pausedForAd = false;
 
     public AdMobAppOpen(ComponentContainer container) {
-        super(container.$form());
-        this.activity = container.$context();
+        super(container, AdMetrics.APP_OPEN);
+        this.createdAt = SystemClock.elapsedRealtime();
+        this.slot = new FullScreenSlot<AppOpenAd>(container.$context(), AdMetrics.APP_OPEN, "AdMobAppOpen",
+                "ca-app-pub-3940256099942544/9257395921", AdPreloadPool.APP_OPEN_TTL_MS,
+                AdLoadScheduler.PRIORITY_APP_OPEN, "Ad not loaded yet",
+                GmsBackend.appOpen(container.$context()), GmsBackend.appOpenAds(), events);
+        // Only auto-show keeps an App Open ad loaded once one has been shown.
+        slot.setAutoRefill(autoShow);
+        form.registerForOnPause(this);
+        form.registerForOnResume(this);
     }
 
-    @SimpleFunction(description = "Initialize AdMob App Open system")
-    public void Initialize() {
-        MobileAds.initialize(activity, initializationStatus -> AdInitialized());
+    @Override
+    void loaded() {
+        super.loaded();
+        maybeShowOnColdStart();
     }
 
-    @SimpleFunction(description = "Set Ad Unit ID")
-    public void SetAdUnitId(String id) {
-        adUnitId = id;
+    @Override
+    void dismissed() {
+        AdDismissed();
     }
 
-    @SimpleFunction(description = "Enable or disable test mode")
-    public void SetTestMode(boolean enabled) {
-        testMode = enabled;
+    @SimpleFunction(description = "Preload an ad whenever the app goes to the background and show it when "
+            + "the user returns (default false).")
+    public void SetAutoShowOnResume(boolean enabled) {
+        autoShow = enabled;
+        slot.setAutoRefill(enabled);
     }
 
-    @SimpleFunction(description = "Load App Open Ad")
-    public void LoadAd() {
-        String unit = testMode ? "ca-app-pub-3940256099942544/9257395921" : adUnitId;
-        AdRequest request = new AdRequest.Builder().build();
-
-        AppOpenAd.load(activity, unit, request, AppOpenAd.APP_OPEN_AD_ORIENTATION_PORTRAIT,
-                new AppOpenAdLoadCallback() {
-                    @Override
-                    public void onAdLoaded(AppOpenAd ad) {
-                        appOpenAd = ad;
-                        AdLoaded();
-                    }
+    @SimpleFunction(description = "Show the first ad that loads within this many milliseconds of app launch. "
+            + "If none is ready in time the launch ad is skipped. 0 (default) disables launch ads.")
+    public void SetColdStartBudget(int millis) {
+        coldStartBudgetMs = Math.max(0, millis);
+    }
 
-                    @Override
-                    public void onAdFailedToLoad(LoadAdError loadAdError) {
-                        AdFailedToLoad(loadAdError.getMessage());
-                    }
-                });
+    @SimpleFunction(description = "Returns true if an unexpired App Open ad is ready to show.")
+    public boolean IsAdReady() {
+        return slot.pool.size() > 0;
     }
 
-    @SimpleFunction(description = "Show App Open Ad if loaded")
+    @Override
+    @SimpleFunction(description = "Show an ad if one is ready. Cancels a pending launch ad.")
     public void ShowAd() {
-        if (appOpenAd != null) {
-            appOpenAd.show(activity);
-            AdDisplayed();
-            appOpenAd = null;
-        } else {
-            AdFailedToLoad("Ad not loaded yet");
+        coldStartPending = false;
+        super.ShowAd();
+    }
+
+    private void maybeShowOnColdStart() {
+        if (!coldStartPending) {
+            return;
+        }
+        coldStartPending = false;
+        long elapsed = SystemClock.elapsedRealtime() - createdAt;
+        if (coldStartBudgetMs > 0 && elapsed <= coldStartBudgetMs) {
+            slot.showIfReady();
+        } else if (coldStartBudgetMs > 0) {
+            AdLog.d("AdMobAppOpen", "Launch ad skipped, ready after ", elapsed, " ms");
         }
     }
 
-    @SimpleEvent(description = "Triggered when AdMob is initialized")
-    public void AdInitialized() {
-        EventDispatcher.dispatchEvent(this, "AdInitialized");
+    @Override
+    public void onPause() {
+        // Our own ad (or another full-screen ad) pausing the activity is not the user leaving.
+        pausedForAd = FullScreenAdGate.isShowing();
+        coldStartPending = false;
+        if (autoShow && !pausedForAd) {
+            LoadAd();
+        }
     }
 
-    @SimpleEvent(description = "Triggered when ad is successfully loaded")
-    public void AdLoaded() {
-        EventDispatcher.dispatchEvent(this, "AdLoaded");
+    @Override
+    public void onResume() {
+        if (pausedForAd) {
+            pausedForAd = false;
+            return;
+        }
+        if (autoShow && !slot.showIfReady()) {
+            LoadAd();
+        }
     }
 
-    @SimpleEvent(description = "Triggered when ad fails to load")
+    // Overridden only to keep the parameter name that existing App Open handlers refer to.
+    @Override
+    @SimpleEvent(description = "Triggered when an ad fails to load.")
     public void AdFailedToLoad(String error) {
-        EventDispatcher.dispatchEvent(this, "AdFailedToLoad", error);
+        super.AdFailedToLoad(error);
     }
 
-    @SimpleEvent(description = "Triggered when ad is displayed")
-    public void AdDisplayed() {
-        EventDispatcher.dispatchEvent(this, "AdDisplayed");
+    @SimpleEvent(description = "Triggered when the ad is dismissed by the user")
+    public void AdDismissed() {
+        EventDispatcher.dispatchEvent(this, "AdDismissed");
     }
 }
\ No newline at end of file
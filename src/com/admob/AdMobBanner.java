@@ -1,46 +1,137 @@
 package com.admob;  // Change this to your own package name
 
 import android.app.Activity;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
-import com.google.android.gms.ads.AdRequest;
 import com.google.android.gms.ads.AdView;
 import com.google.android.gms.ads.AdSize;
-import com.google.android.gms.ads.MobileAds;
-import com.google.android.gms.ads.initialization.InitializationStatus;
-import com.google.android.gms.ads.initialization.OnInitializationCompleteListener;
 
 import com.google.appinventor.components.annotations.*;
+import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.runtime.*;
 
 @DesignerComponent(
         version = 1,
-        description = "AdMob Banner Extension with App ID, Ad Unit, and Test Mode support.",
+        description = "AdMob Banner Extension with Ad Unit and Test Mode support.",
         category = ComponentCategory.EXTENSION,
         nonVisible = true,
         iconName = "aiwebres/icon.png")
 
 @SimpleObject(external = true)
-public class AdMobBanner extends AndroidNonvisibleComponent {
+public class AdMobBanner extends AdMobComponent
+        implements OnPauseListener, OnResumeListener, OnDestroyListener {
 
     private final Activity activity;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // One container and one AdView per component, reused by every load.
+    private FrameLayout layout;
     private AdView adView;
-    private String appId = "";
+    private String viewAdUnitId;
     private String adUnitId = "";
     private boolean testMode = false;
-    private boolean isInitialized = false;
+    private int refreshIntervalSeconds = 0;
+    private boolean adaptive = false;
+    private int bannerWidthDp = 0;
+    private boolean reserveSpace = false;
+    private boolean paused = false;
+    private final AdSlotState state = new AdSlotState();
+    private int loadPriority = AdLoadScheduler.PRIORITY_BANNER;
+    private AdLoadScheduler.Ticket loadTicket;
+    private AdLoader<AdView> bannerLoader;
+    private boolean networkAware = true;
+    private boolean waitingForNetwork;
+    private final BannerPlacements placements;
+    private final NetworkMonitor.Listener networkListener = new NetworkMonitor.Listener() {
+        @Override
+        public void onNetworkChanged(int type) {
+            if (type != NetworkMonitor.OFFLINE) {
+                placements.scheduleCheck();
+            }
+            // While paused, onResume picks the load up instead.
+            if (waitingForNetwork && type != NetworkMonitor.OFFLINE && !paused) {
+                waitingForNetwork = false;
+                if (adView != null) {
+                    requestAd();
+                }
+            }
+        }
+    };
+
+    private final AdLoader.Callback<AdView> loadCallback = new AdLoader.Callback<AdView>() {
+        @Override
+        public void onLoaded(AdView ad) {
+            finishTicket();
+            state.settle(1, 0);
+            scheduleRefresh();
+        }
+
+        @Override
+        public void onFailed(int code, String message) {
+            finishTicket();
+            state.settle(0, 0);
+            AdLog.e("AdMobBanner", "Banner failed to load: ", message);
+            scheduleRefresh();
+        }
+    };
+
+    private final Runnable refreshTask = new Runnable() {
+        @Override
+        public void run() {
+            if (adView != null && !paused) {
+                requestAd();
+            }
+        }
+    };
 
     public AdMobBanner(ComponentContainer container) {
-        super(container.$form());
+        super(container, AdMetrics.BANNER);
         this.activity = container.$context();
-        Log.d("AdMobBanner", "Extension Loaded");
+        AdMobInitializer.markCreated();
+        this.placements = new BannerPlacements(activity, new BannerPlacements.Host() {
+            @Override
+            public String adUnitId() {
+                return unit();
+            }
+
+            @Override
+            public AdSize adSize() {
+                return bannerSize();
+            }
+
+            @Override
+            public int loadPriority() {
+                return loadPriority;
+            }
+
+            @Override
+            public boolean canLoad() {
+                return !networkAware || !NetworkMonitor.isOffline();
+            }
+
+            @Override
+            public void onLoaded(AndroidViewComponent arrangement) {
+                PlacementLoaded(arrangement);
+            }
+
+            @Override
+            public void onFailed(AndroidViewComponent arrangement, String message) {
+                PlacementFailedToLoad(arrangement, message);
+            }
+        });
+        form.registerForOnPause(this);
+        form.registerForOnResume(this);
+        form.registerForOnDestroy(this);
+        NetworkMonitor.attach(activity);
+        NetworkMonitor.addListener(networkListener);
+        AdLog.d("AdMobBanner", "Extension Loaded");
     }
 
-    // 🔹 Set App ID (can be your real one or dynamic)
-    @SimpleFunction(description = "Set your AdMob App ID (e.g., ca-app-pub-xxxxxxxx~yyyyyyyy)")
+    // 🔹 App ID: read by the SDK from the manifest, so this block only warns
+    @SimpleFunction(description = "Has no effect: the ads SDK reads the App ID from the com.google.android.gms.ads.APPLICATION_ID meta-data in the app's manifest. Kept so existing projects still open.")
     public void SetAppId(String id) {
-        this.appId = id;
+        AdLog.w("AdMobBanner", "SetAppId has no effect; the App ID is read from the app's manifest");
     }
 
     // 🔹 Set Ad Unit ID
@@ -56,66 +147,270 @@ public class AdMobBanner extends AndroidNonvisibleComponent {
     }
 
     // 🔹 Initialize AdMob
-    @SimpleFunction(description = "Initialize AdMob with the App ID. Must be called before loading ads.")
+    @SimpleFunction(description = "Initialize AdMob. Banner loads requested earlier are held until it completes.")
     public void Initialize() {
-        if (isInitialized) {
-            Log.d("AdMobBanner", "Already initialized");
-            AdInitialized();
-            return;
-        }
-
-        String finalAppId = testMode
-                ? "ca-app-pub-3940256099942544~3347511713" // ✅ Google Test App ID
-                : (appId.isEmpty() ? "ca-app-pub-3940256099942544~3347511713" : appId);
-
-        MobileAds.initialize(activity, finalAppId, new OnInitializationCompleteListener() {
+        AdMobInitializer.initialize(activity, new AdMobInitializer.Callback() {
             @Override
-            public void onInitializationComplete(InitializationStatus initializationStatus) {
-                isInitialized = true;
-                Log.d("AdMobBanner", "AdMob initialized with App ID: " + finalAppId);
+            public void onInitialized() {
+                AdLog.d("AdMobBanner", "AdMob initialized");
                 AdInitialized();
             }
+
+            @Override
+            public void onInitializationFailed(String message) {
+                AdLog.e("AdMobBanner", message);
+            }
         });
     }
 
     // 🔹 Load Banner Ad
     @SimpleFunction(description = "Load and display a banner ad.")
     public void LoadBanner() {
-        if (!isInitialized) {
-            Log.e("AdMobBanner", "Initialize AdMob first!");
+        if (adUnitId.isEmpty()) {
+            AdLog.e("AdMobBanner", "Ad Unit ID is empty!");
             return;
         }
 
-        if (adUnitId.isEmpty()) {
-            Log.e("AdMobBanner", "Ad Unit ID is empty!");
+        // Loads requested before the SDK is ready are queued, not dropped.
+        AdMobInitializer.runWhenInitialized(activity, new Runnable() {
+            @Override
+            public void run() {
+                showBanner();
+            }
+        });
+    }
+
+    // 🔹 Placements
+    @SimpleFunction(description = "Show banners inside an arrangement, e.g. one in a scrolling list. Each placement "
+            + "loads only when it is about to scroll into view, and placements share a small pool of banner views.")
+    public void AddPlacement(final AndroidViewComponent arrangement) {
+        if (adUnitId.isEmpty() && !testMode) {
+            AdLog.e("AdMobBanner", "Ad Unit ID is empty!");
             return;
         }
+        AdMobInitializer.runWhenInitialized(activity, new Runnable() {
+            @Override
+            public void run() {
+                if (!placements.add(arrangement)) {
+                    PlacementFailedToLoad(arrangement, "Placement must be an arrangement");
+                }
+            }
+        });
+    }
 
+    @SimpleFunction(description = "Stop showing banners in an arrangement; its banner view goes back to the pool.")
+    public void RemovePlacement(AndroidViewComponent arrangement) {
+        placements.remove(arrangement);
+    }
+
+    @SimpleFunction(description = "Maximum banner views shared by all placements of this component (default 3). "
+            + "Placements beyond that wait until one scrolls away.")
+    public void SetPlacementPoolSize(int count) {
+        placements.setMaxViews(count);
+    }
+
+    @SimpleFunction(description = "Start loading a placement when it is this many dp from the screen (default 200).")
+    public void SetPlacementPreloadDistance(int dp) {
+        placements.setPreloadDistance(dp);
+    }
+
+    @SimpleFunction(description = "Returns the number of placements added.")
+    public int PlacementCount() {
+        return placements.placementCount();
+    }
+
+    @SimpleFunction(description = "Returns the number of banner views the placements currently hold, on screen or pooled.")
+    public int PlacementViewCount() {
+        return placements.viewCount();
+    }
+
+    // 🔹 Auto refresh
+    @SimpleFunction(description = "Reload the banner every N seconds, reusing the same view. 0 (default) disables.")
+    public void SetRefreshInterval(int seconds) {
+        refreshIntervalSeconds = Math.max(0, seconds);
+        handler.removeCallbacks(refreshTask);
+        scheduleRefresh();
+    }
+
+    // 🔹 Adaptive size
+    @SimpleFunction(description = "Use an anchored adaptive banner sized to the screen width instead of 320x50 (default false).")
+    public void SetAdaptiveSize(boolean enabled) {
+        adaptive = enabled;
+    }
+
+    @SimpleFunction(description = "Width in dp used for adaptive banners. 0 (default) uses the full screen width.")
+    public void SetBannerWidth(int widthDp) {
+        bannerWidthDp = Math.max(0, widthDp);
+    }
+
+    @SimpleFunction(description = "Reserve the banner's height before the ad arrives so content does not jump when it loads.")
+    public void SetReserveSpace(boolean enabled) {
+        reserveSpace = enabled;
+    }
+
+    // 🔹 Network
+    @SimpleFunction(description = "Hold banner loads while offline and refresh less often on metered or slow networks (default true).")
+    public void SetNetworkAware(boolean enabled) {
+        networkAware = enabled;
+    }
+
+    // 🔹 Load scheduling
+    @SimpleFunction(description = "Set this component's ad load priority, 0 (highest) to 3 (lowest). "
+            + "Defaults: App Open 0, rewarded 1, interstitial 2, banner 3.")
+    public void SetLoadPriority(int priority) {
+        loadPriority = AdLoadScheduler.clampPriority(priority);
+    }
+
+    // 🔹 Ad state
+    @SimpleFunction(description = "Returns the banner state: IDLE, LOADING or LOADED.")
+    public String AdState() {
+        return state.name();
+    }
+
+    private AdSize bannerSize() {
+        return adaptive ? BannerSizeCache.adaptiveSize(activity, bannerWidthDp) : AdSize.BANNER;
+    }
+
+    private String unit() {
+        return testMode
+                ? "ca-app-pub-3940256099942544/6300978111" // ✅ Google Test Banner
+                : adUnitId;
+    }
+
+    private void showBanner() {
         activity.runOnUiThread(() -> {
-            adView = new AdView(activity);
-            adView.setAdSize(AdSize.BANNER);
-            adView.setAdUnitId(testMode
-                    ? "ca-app-pub-3940256099942544/6300978111" // ✅ Google Test Banner
-                    : adUnitId);
-
-            FrameLayout layout = new FrameLayout(activity);
-            layout.addView(adView, new FrameLayout.LayoutParams(
-                    ViewGroup.LayoutParams.MATCH_PARENT,
-                    ViewGroup.LayoutParams.WRAP_CONTENT));
-
-            activity.addContentView(layout, new FrameLayout.LayoutParams(
-                    ViewGroup.LayoutParams.MATCH_PARENT,
-                    ViewGroup.LayoutParams.WRAP_CONTENT));
-
-            AdRequest adRequest = new AdRequest.Builder().build();
-            adView.loadAd(adRequest);
-            Log.d("AdMobBanner", "Banner loaded");
+            String unit = unit();
+            AdSize size = bannerSize();
+            if (adView != null && (!unit.equals(viewAdUnitId) || !size.equals(adView.getAdSize()))) {
+                // An AdView's unit and size can only be set once, so swap the view but keep the container.
+                layout.removeView(adView);
+                adView.destroy();
+                adView = null;
+                bannerLoader = null;
+                finishTicket();
+                state.settle(0, 0);
+            }
+            if (layout == null) {
+                layout = new FrameLayout(activity);
+                activity.addContentView(layout, new FrameLayout.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT,
+                        ViewGroup.LayoutParams.WRAP_CONTENT));
+            }
+            layout.setMinimumHeight(reserveSpace ? size.getHeightInPixels(activity) : 0);
+            if (adView == null) {
+                adView = new AdView(activity);
+                adView.setAdSize(size);
+                adView.setAdUnitId(unit);
+                bannerLoader = AdMetrics.metered(AdMetrics.BANNER, GmsBackend.banner(adView));
+                viewAdUnitId = unit;
+                layout.addView(adView, new FrameLayout.LayoutParams(
+                        ViewGroup.LayoutParams.MATCH_PARENT,
+                        ViewGroup.LayoutParams.WRAP_CONTENT));
+            }
+            requestAd();
+        });
+    }
+
+    private void requestAd() {
+        if (networkAware && NetworkMonitor.isOffline()) {
+            // Keep whatever is on screen and load again once the network listener sees a connection.
+            waitingForNetwork = true;
+            handler.removeCallbacks(refreshTask);
+            return;
+        }
+        // A refresh of a banner that is already showing is a preload and may wait for other formats.
+        boolean preload = state.is(AdSlotState.LOADED);
+        if (!state.transition(AdSlotState.IDLE, AdSlotState.LOADING)
+                && !state.transition(AdSlotState.LOADED, AdSlotState.LOADING)) {
+            // Already LOADING: join the request in flight; the listener reschedules the refresh.
+            return;
+        }
+        handler.removeCallbacks(refreshTask);
+        final AdView view = adView;
+        AdLoadScheduler.submit(loadPriority, preload, new AdLoadScheduler.Task() {
+            @Override
+            public void start(final AdLoadScheduler.Ticket ticket) {
+                activity.runOnUiThread(() -> {
+                    if (adView == null || adView != view) {
+                        // Gone, or swapped for a new unit or size; the swap asked for its own load.
+                        ticket.finish();
+                        return;
+                    }
+                    finishTicket();
+                    loadTicket = ticket;
+                    bannerLoader.load(viewAdUnitId, loadCallback);
+                    AdLog.d("AdMobBanner", "Banner loaded");
+                });
+            }
         });
     }
 
-    // 🔹 Event when AdMob is initialized
-    @SimpleEvent(description = "Triggered when AdMob finishes initialization.")
-    public void AdInitialized() {
-        EventDispatcher.dispatchEvent(this, "AdInitialized");
+    private void finishTicket() {
+        if (loadTicket != null) {
+            loadTicket.finish();
+            loadTicket = null;
+        }
+    }
+
+    private void scheduleRefresh() {
+        handler.removeCallbacks(refreshTask);
+        if (refreshIntervalSeconds > 0 && adView != null && !paused) {
+            // Refresh half as often on metered or slow networks.
+            long factor = networkAware && NetworkMonitor.isConstrained() ? 2 : 1;
+            handler.postDelayed(refreshTask, refreshIntervalSeconds * 1000L * factor);
+        }
+    }
+
+    @Override
+    public void onPause() {
+        paused = true;
+        placements.pause();
+        handler.removeCallbacks(refreshTask);
+        if (adView != null) {
+            adView.pause();
+        }
+    }
+
+    @Override
+    public void onResume() {
+        paused = false;
+        placements.resume();
+        if (adView != null) {
+            adView.resume();
+            if (waitingForNetwork && !NetworkMonitor.isOffline()) {
+                waitingForNetwork = false;
+                requestAd();
+            } else {
+                scheduleRefresh();
+            }
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacks(refreshTask);
+        NetworkMonitor.removeListener(networkListener);
+        placements.destroy();
+        if (adView != null) {
+            adView.destroy();
+            adView = null;
+            bannerLoader = null;
+        }
+        finishTicket();
+        state.settle(0, 0);
+        if (layout != null && layout.getParent() instanceof ViewGroup) {
+            ((ViewGroup) layout.getParent()).removeView(layout);
+        }
+        layout = null;
+    }
+
+    @SimpleEvent(description = "Triggered when a placement shows a banner, either newly loaded or reused from the pool.")
+    public void PlacementLoaded(AndroidViewComponent arrangement) {
+        EventDispatcher.dispatchEvent(this, "PlacementLoaded", arrangement);
+    }
+
+    @SimpleEvent(description = "Triggered when a placement's banner fails to load.")
+    public void PlacementFailedToLoad(AndroidViewComponent arrangement, String errorMessage) {
+        EventDispatcher.dispatchEvent(this, "PlacementFailedToLoad", arrangement, errorMessage);
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.admob;
+
+import com.google.appinventor.components.annotations.*;
+import com.google.appinventor.components.runtime.*;
+import com.google.appinventor.components.runtime.util.YailList;
+
+/**
+ * Blocks every AdMob component offers. Most act on process-wide settings
+ * (initialization mode, request targeting, the load scheduler, logging), so
+ * any component can set them for all; the stats blocks act on the
+ * component's own ad format.
+ */
+@SimpleObject
+public abstract class AdMobComponent extends AndroidNonvisibleComponent {
+    /** The {@link AdMetrics} format this component's stats are kept under. */
+    final String format;
+
+    AdMobComponent(ComponentContainer container, String format) {
+        super(container.$form());
+        this.format = format;
+    }
+
+    @SimpleFunction(description = "Run SDK initialization on a background thread (default false). Call before Initialize.")
+    public void SetInitializeInBackground(boolean enabled) {
+        AdMobInitializer.setBackground(enabled);
+    }
+
+    @SimpleFunction(description = "Defer SDK initialization until \"firstDraw\" or \"firstIdle\" of the screen, or \"none\" (default). Call before Initialize.")
+    public void SetDeferInitialization(String until) {
+        AdMobInitializer.setDeferMode(until);
+    }
+
+    @SimpleFunction(description = "Milliseconds from app start until AdMob finished initializing, or -1 if it has not finished yet.")
+    public long InitializationTime() {
+        return AdMobInitializer.initializationTimeMs();
+    }
+
+    @SimpleFunction(description = "Returns the current network as \"offline\", \"constrained\" (metered or slow) or \"unmetered\".")
+    public String NetworkType() {
+        return NetworkMonitor.name();
+    }
+
+    @SimpleFunction(description = "Set keywords sent with every ad request from all AdMob components.")
+    public void SetKeywords(YailList keywords) {
+        AdRequestConfig.setKeywords(keywords.toStringArray());
+    }
+
+    @SimpleFunction(description = "Set the URL of the content the ads appear next to, for every AdMob component. Empty clears it.")
+    public void SetContentUrl(String url) {
+        AdRequestConfig.setContentUrl(url);
+    }
+
+    @SimpleFunction(description = "Set the device IDs that receive test ads for every AdMob component.")
+    public void SetTestDeviceIds(YailList deviceIds) {
+        AdRequestConfig.setTestDeviceIds(deviceIds.toStringArray());
+    }
+
+    @SimpleFunction(description = "Limit ad content to \"G\", \"PG\", \"T\" or \"MA\" for every AdMob component. Empty removes the limit.")
+    public void SetMaxAdContentRating(String rating) {
+        AdRequestConfig.setMaxAdContentRating(rating);
+    }
+
+    @SimpleFunction(description = "Set how many ad requests may be in flight at once across all AdMob components (default 2).")
+    public void SetMaxConcurrentAdLoads(int max) {
+        AdLoadScheduler.setMaxConcurrent(max);
+    }
+
+    @SimpleFunction(description = "Returns request count, fill rate and latency percentiles for each ad unit of this component's format.")
+    public String GetStats() {
+        return AdMetrics.summary(format);
+    }
+
+    @SimpleFunction(description = "Returns the metrics of every AdMob format and ad unit as JSON.")
+    public String GetStatsJson() {
+        return AdMetrics.toJson();
+    }
+
+    @SimpleFunction(description = "Clears the metrics of this component's format.")
+    public void ResetStats() {
+        AdMetrics.reset(format);
+    }
+
+    @SimpleFunction(description = "Set how much the AdMob components log: \"debug\", \"info\", \"warn\" (default), \"error\" or \"none\".")
+    public void SetLogLevel(String level) {
+        AdLog.setLevel(level);
+    }
+
+    @SimpleFunction(description = "Returns the most recent ad events of all AdMob components, oldest first, one per line.")
+    public String GetTrace() {
+        return AdTrace.dump();
+    }
+
+    @SimpleEvent(description = "Triggered when the AdMob SDK finishes initializing.")
+    public void AdInitialized() {
+        EventDispatcher.dispatchEvent(this, "AdInitialized");
+    }
+}
@@ -0,0 +1,186 @@
+package com.admob;
+
+import com.google.appinventor.components.annotations.*;
+import com.google.appinventor.components.runtime.*;
+import com.google.appinventor.components.runtime.util.YailList;
+
+/**
+ * Blocks shared by the full-screen formats: ad units, retries, frequency
+ * caps and the ad's own events, all backed by one {@link FullScreenSlot}.
+ */
+@SimpleObject
+public abstract class AdMobFullScreenAd extends AdMobComponent implements OnDestroyListener {
+    /** Created by each subclass's constructor, with {@link #events} as its listener. */
+    FullScreenSlot<?> slot;
+
+    final FullScreenSlot.Events events = new FullScreenSlot.Events() {
+        @Override
+        public void onInitialized() {
+            AdInitialized();
+        }
+
+        @Override
+        public void onLoaded() {
+            loaded();
+        }
+
+        @Override
+        public void onFailed(String message) {
+            AdFailedToLoad(message);
+        }
+
+        @Override
+        public void onDisplayed() {
+            AdDisplayed();
+        }
+
+        @Override
+        public void onDismissed() {
+            dismissed();
+        }
+    };
+
+    AdMobFullScreenAd(ComponentContainer container, String format) {
+        super(container, format);
+        form.registerForOnDestroy(this);
+    }
+
+    /** Called when an ad has been added to the pool. */
+    void loaded() {
+        AdLoaded();
+    }
+
+    /** Called when the user closes an ad; each format has its own event for it. */
+    abstract void dismissed();
+
+    @SimpleFunction(description = "Initialize the AdMob SDK. The App ID comes from the app's manifest.")
+    public void Initialize() {
+        slot.initialize();
+    }
+
+    @SimpleFunction(description = "Set the ad unit ID.")
+    public void SetAdUnitId(String adUnitId) {
+        slot.setAdUnitIds(new String[] {adUnitId});
+    }
+
+    @SimpleFunction(description = "Set several ad unit IDs, best floor first. Later units are also requested "
+            + "when earlier ones fail or answer slower than the hedge delay, and the best-ranked fill is kept.")
+    public void SetAdUnitIds(YailList adUnitIds) {
+        slot.setAdUnitIds(adUnitIds.toStringArray());
+    }
+
+    @SimpleFunction(description = "Milliseconds to wait for one ad unit before also requesting the next (default 1500).")
+    public void SetHedgeDelay(int millis) {
+        slot.waterfall.setHedgeDelay(millis);
+    }
+
+    @SimpleFunction(description = "Enable or disable test mode (true = test ads).")
+    public void SetTestMode(boolean testMode) {
+        slot.setTestMode(testMode);
+    }
+
+    @SimpleFunction(description = "Returns the ad state: IDLE, LOADING, LOADED or SHOWING.")
+    public String AdState() {
+        return slot.state.name();
+    }
+
+    @SimpleFunction(description = "Retry failed loads automatically: up to maxRetries times, waiting baseDelayMs "
+            + "doubled per attempt (with jitter) and capped at maxDelayMs. Defaults: 5, 1000, 60000.")
+    public void SetRetryPolicy(int maxRetries, int baseDelayMs, int maxDelayMs) {
+        slot.retry.configure(maxRetries, baseDelayMs, maxDelayMs);
+    }
+
+    @SimpleFunction(description = "Stop sending ad requests for cooldownMs after failureThreshold consecutive "
+            + "load failures. Defaults: 5 failures, 300000 ms.")
+    public void SetCircuitBreaker(int failureThreshold, int cooldownMs) {
+        slot.retry.configureBreaker(failureThreshold, cooldownMs);
+    }
+
+    @SimpleFunction(description = "Returns the number of automatic retries made since the last successful load.")
+    public int RetryAttempt() {
+        return slot.retry.attempt();
+    }
+
+    @SimpleFunction(description = "Returns true while ad requests are paused after repeated failures.")
+    public boolean IsCircuitOpen() {
+        return slot.retry.isOpen();
+    }
+
+    @SimpleFunction(description = "Returns the milliseconds until the next ad request is allowed, 0 if one is allowed now.")
+    public long NextRetryIn() {
+        return slot.retry.waitMs();
+    }
+
+    @SimpleFunction(description = "Set this component's ad load priority, 0 (highest) to 3 (lowest). "
+            + "Defaults: App Open 0, rewarded 1, interstitial 2, banner 3.")
+    public void SetLoadPriority(int priority) {
+        slot.setLoadPriority(priority);
+    }
+
+    @SimpleFunction(description = "Minimum milliseconds between two ads of this format, kept across app restarts. 0 (default) means no minimum.")
+    public void SetMinShowInterval(int millis) {
+        FrequencyCap.setMinInterval(format, millis);
+    }
+
+    @SimpleFunction(description = "Maximum ads of this format shown in any rolling hour. 0 (default) means no limit.")
+    public void SetMaxShowsPerHour(int max) {
+        FrequencyCap.setMaxPerHour(format, max);
+    }
+
+    @SimpleFunction(description = "Maximum ads of this format shown in any rolling 24 hours. 0 (default) means no limit.")
+    public void SetMaxShowsPerDay(int max) {
+        FrequencyCap.setMaxPerDay(format, max);
+    }
+
+    @SimpleFunction(description = "Number of ads of this format shown in the last 24 hours.")
+    public int ShowsInLastDay() {
+        return FrequencyCap.showsInLastDay(format);
+    }
+
+    @SimpleFunction(description = "Milliseconds until the frequency caps allow the next ad of this format, 0 if one may be shown now.")
+    public long NextShowAllowedIn() {
+        return FrequencyCap.waitMs(format);
+    }
+
+    @SimpleFunction(description = "Hold loads and retries while offline and resume when the network returns (default true). "
+            + "Components with a preload pool also preload less on metered or slow networks.")
+    public void SetNetworkAware(boolean enabled) {
+        slot.setNetworkAware(enabled);
+    }
+
+    @SimpleFunction(description = "Maximum loaded full-screen ads kept across all AdMob components (default 4). "
+            + "The oldest is dropped when there are more, or when the device runs low on memory.")
+    public void SetCachedAdBudget(int max) {
+        AdCacheBudget.setMaxAds(max);
+    }
+
+    @SimpleFunction(description = "Load ads until the preload pool is full.")
+    public void LoadAd() {
+        slot.load();
+    }
+
+    @SimpleFunction(description = "Show an ad if one is ready.")
+    public void ShowAd() {
+        slot.show();
+    }
+
+    @Override
+    public void onDestroy() {
+        slot.destroy();
+    }
+
+    @SimpleEvent(description = "Triggered when an ad loads successfully.")
+    public void AdLoaded() {
+        EventDispatcher.dispatchEvent(this, "AdLoaded");
+    }
+
+    @SimpleEvent(description = "Triggered when an ad fails to load.")
+    public void AdFailedToLoad(String errorMessage) {
+        EventDispatcher.dispatchEvent(this, "AdFailedToLoad", errorMessage);
+    }
+
+    @SimpleEvent(description = "Triggered when an ad is displayed.")
+    public void AdDisplayed() {
+        EventDispatcher.dispatchEvent(this, "AdDisplayed");
+    }
+}
@@ -0,0 +1,309 @@
+package com.admob;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide, single-flight initializer for the Mobile Ads SDK.
+ *
+ * The first caller starts {@code MobileAds.initialize}; everyone else that
+ * asks while it is running is queued and notified when it completes, and
+ * later callers are notified immediately. Work passed to
+ * {@link #runWhenInitialized} (typically ad loads) is held until the SDK is
+ * ready instead of being dropped.
+ *
+ * The SDK call can be moved to a background thread and deferred until after
+ * the first frame is drawn or the main thread first goes idle, so it stays
+ * off the cold-start path. Completion is always delivered on the main thread.
+ */
+final class AdMobInitializer {
+
+    interface Callback {
+        void onInitialized();
+
+        void onInitializationFailed(String message);
+    }
+
+    private static final String TAG = "AdMobInitializer";
+
+    static final int DEFER_NONE = 0;
+    static final int DEFER_FIRST_DRAW = 1;
+    static final int DEFER_FIRST_IDLE = 2;
+
+    private static final int IDLE = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+
+    private static final Object lock = new Object();
+    private static final List<Callback> callbacks = new ArrayList<>();
+    private static final List<Runnable> pendingWork = new ArrayList<>();
+    private static int state = IDLE;
+    private static boolean dispatched;
+
+    private static volatile boolean background = false;
+    private static volatile int deferMode = DEFER_NONE;
+    private static long createdAt;
+    private static volatile long initializationTimeMs = -1;
+    private static Handler mainHandler;
+    private static ExecutorService executor;
+
+    private AdMobInitializer() {
+    }
+
+    /** Records the construction time of the first ad component in this process. */
+    static void markCreated() {
+        synchronized (lock) {
+            if (createdAt == 0) {
+                createdAt = SystemClock.elapsedRealtime();
+            }
+        }
+    }
+
+    static void setBackground(boolean enabled) {
+        background = enabled;
+    }
+
+    /** Accepts "none", "firstDraw" or "firstIdle"; anything else means none. */
+    static void setDeferMode(String mode) {
+        if ("firstDraw".equalsIgnoreCase(mode)) {
+            deferMode = DEFER_FIRST_DRAW;
+        } else if ("firstIdle".equalsIgnoreCase(mode)) {
+            deferMode = DEFER_FIRST_IDLE;
+        } else {
+            deferMode = DEFER_NONE;
+        }
+    }
+
+    /**
+     * Milliseconds from the first component's construction until the SDK
+     * reported ready, or -1 while initialization has not completed.
+     */
+    static long initializationTimeMs() {
+        return initializationTimeMs;
+    }
+
+    /**
+     * Starts SDK initialization if nobody has yet and notifies {@code callback}
+     * once it has completed.
+     */
+    static void initialize(Context context, Callback callback) {
+        boolean ready;
+        boolean start;
+        synchronized (lock) {
+            ready = state == DONE;
+            if (!ready) {
+                callbacks.add(callback);
+            }
+            start = state == IDLE;
+            if (start) {
+                state = RUNNING;
+            }
+        }
+        if (start) {
+            start(context);
+        } else if (ready) {
+            callback.onInitialized();
+        }
+    }
+
+    /**
+     * Runs {@code work} now if the SDK is ready, otherwise queues it until
+     * initialization completes, starting initialization if needed.
+     */
+    static void runWhenInitialized(Context context, Runnable work) {
+        boolean ready;
+        boolean start;
+        synchronized (lock) {
+            ready = state == DONE;
+            if (!ready) {
+                pendingWork.add(work);
+            }
+            start = state == IDLE;
+            if (start) {
+                state = RUNNING;
+            }
+        }
+        if (start) {
+            start(context);
+        } else if (ready) {
+            work.run();
+        }
+    }
+
+    private static void start(final Context context) {
+        switch (deferMode) {
+            case DEFER_FIRST_DRAW:
+                if (context instanceof Activity && ((Activity) context).getWindow() != null) {
+                    final View decor = ((Activity) context).getWindow().getDecorView();
+                    mainHandler().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            afterFirstDraw(decor, context);
+                        }
+                    });
+                    return;
+                }
+                break;
+            case DEFER_FIRST_IDLE:
+                mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                            @Override
+                            public boolean queueIdle() {
+                                dispatch(context);
+                                return false;
+                            }
+                        });
+                    }
+                });
+                return;
+            default:
+                break;
+        }
+        dispatch(context);
+    }
+
+    private static void afterFirstDraw(View decor, final Context context) {
+        if (decor.isLaidOut() && decor.isAttachedToWindow()) {
+            // The first frame is already on screen and a static screen may never draw again.
+            dispatch(context);
+            return;
+        }
+        final ViewTreeObserver observer = decor.getViewTreeObserver();
+        observer.addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                final ViewTreeObserver.OnDrawListener self = this;
+                // Listeners cannot be removed from inside onDraw, so hop to the next message.
+                mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (observer.isAlive()) {
+                            observer.removeOnDrawListener(self);
+                        }
+                        dispatch(context);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void dispatch(final Context context) {
+        synchronized (lock) {
+            if (state != RUNNING || dispatched) {
+                return;
+            }
+            dispatched = true;
+        }
+        if (background) {
+            executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    initializeSdk(context);
+                }
+            });
+        } else {
+            initializeSdk(context);
+        }
+    }
+
+    private static void initializeSdk(Context context) {
+        try {
+            GmsBackend.initialize(context, new Runnable() {
+                @Override
+                public void run() {
+                    complete();
+                }
+            });
+        } catch (Exception e) {
+            AdLog.e(TAG, "Error initializing AdMob: ", e.getMessage());
+            fail("Initialization failed: " + e.getMessage());
+        }
+    }
+
+    private static synchronized Handler mainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    private static synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor();
+        }
+        return executor;
+    }
+
+    private static boolean onMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static void complete() {
+        if (!onMainThread()) {
+            mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    complete();
+                }
+            });
+            return;
+        }
+        List<Callback> toNotify;
+        List<Runnable> toRun;
+        synchronized (lock) {
+            state = DONE;
+            if (createdAt != 0) {
+                initializationTimeMs = SystemClock.elapsedRealtime() - createdAt;
+            }
+            toNotify = new ArrayList<>(callbacks);
+            toRun = new ArrayList<>(pendingWork);
+            callbacks.clear();
+            pendingWork.clear();
+        }
+        AdTrace.record("sdk", "initialized", null);
+        AdLog.i(TAG, "AdMob initialized after ", initializationTimeMs, " ms");
+        for (Callback callback : toNotify) {
+            callback.onInitialized();
+        }
+        for (Runnable work : toRun) {
+            work.run();
+        }
+    }
+
+    private static void fail(final String message) {
+        if (!onMainThread()) {
+            mainHandler().post(new Runnable() {
+                @Override
+                public void run() {
+                    fail(message);
+                }
+            });
+            return;
+        }
+        List<Callback> toNotify;
+        synchronized (lock) {
+            // Queued work stays queued so the next Initialize attempt can run it.
+            state = IDLE;
+            dispatched = false;
+            toNotify = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        AdTrace.record("sdk", "init_failed", message);
+        for (Callback callback : toNotify) {
+            callback.onInitializationFailed(message);
+        }
+    }
+}
@@ -1,16 +1,9 @@
 package com.admob;
 
-import android.app.Activity;
-import android.util.Log;
-import androidx.annotation.NonNull;
 import com.google.appinventor.components.annotations.*;
 import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.runtime.*;
-import com.google.android.gms.ads.*;
-import com.google.android.gms.ads.initialization.InitializationStatus;
-import com.google.android.gms.ads.initialization.OnInitializationCompleteListener;
 import com.google.android.gms.ads.interstitial.InterstitialAd;
-import com.google.android.gms.ads.interstitial.InterstitialAdLoadCallback;
 
 @DesignerComponent(
     version = 1,
@@ -22,131 +15,53 @@ import com.google.android.gms.ads.interstitial.InterstitialAdLoadCallback;
 @SimpleObject(external = true)
 @UsesPermissions(permissionNames = "android.permission.INTERNET, android.permission.ACCESS_NETWORK_STATE")
 @UsesLibraries(libraries = "play-services-ads-lite.jar")
-public class AdMobInterstitial extends AndroidNonvisibleComponent {
-    private final Activity activity;
-    private InterstitialAd interstitialAd;
-    private String adUnitId = "";
-    private String appId = "";
-    private boolean testMode = true;
+public class AdMobInterstitial extends AdMobFullScreenAd {
 
     public AdMobInterstitial(ComponentContainer container) {
-        super(container.$form());
-        this.activity = container.$context();
+        super(container, AdMetrics.INTERSTITIAL);
+        this.slot = new FullScreenSlot<InterstitialAd>(container.$context(), AdMetrics.INTERSTITIAL,
+                "AdMobInterstitial", "ca-app-pub-3940256099942544/1033173712", AdPreloadPool.FULL_SCREEN_TTL_MS,
+                AdLoadScheduler.PRIORITY_INTERSTITIAL, "Ad not ready yet",
+                GmsBackend.interstitial(container.$context()), GmsBackend.interstitialAds(), events);
     }
 
-    @SimpleFunction(description = "Set your AdMob App ID.")
-    public void SetAppId(String appId) {
-        this.appId = appId;
-    }
-
-    @SimpleFunction(description = "Set your Interstitial Ad Unit ID.")
-    public void SetAdUnitId(String adUnitId) {
-        this.adUnitId = adUnitId;
-    }
-
-    @SimpleFunction(description = "Enable or disable test mode (true = test ads).")
-    public void SetTestMode(boolean testMode) {
-        this.testMode = testMode;
-    }
-
-    @SimpleFunction(description = "Initialize the AdMob SDK with the App ID.")
-    public void Initialize() {
-        String usedAppId = testMode
-            ? "ca-app-pub-3940256099942544~3347511713"
-            : appId;
-
-        try {
-            MobileAds.initialize(activity, usedAppId, new OnInitializationCompleteListener() {
-                @Override
-                public void onInitializationComplete(InitializationStatus initializationStatus) {
-                    Log.d("AdMobInterstitial", "AdMob initialized successfully");
-                    AdInitialized();
-                }
-            });
-        } catch (Exception e) {
-            Log.e("AdMobInterstitial", "Error initializing AdMob: " + e.getMessage());
-            AdFailedToLoad("Initialization failed: " + e.getMessage());
-        }
+    @Override
+    void dismissed() {
+        AdDismissed();
     }
 
-    @SimpleFunction(description = "Load the interstitial ad.")
-    public void LoadAd() {
-        String usedAdUnit = testMode
-            ? "ca-app-pub-3940256099942544/1033173712"
-            : adUnitId;
-
-        AdRequest adRequest = new AdRequest.Builder().build();
-
-        InterstitialAd.load(activity, usedAdUnit, adRequest, new InterstitialAdLoadCallback() {
-            @Override
-            public void onAdLoaded(@NonNull InterstitialAd ad) {
-                interstitialAd = ad;
-                AdLoaded();
-                Log.d("AdMobInterstitial", "Ad loaded successfully");
-            }
-
-            @Override
-            public void onAdFailedToLoad(@NonNull LoadAdError adError) {
-                interstitialAd = null;
-                String errorMsg = adError.getMessage();
-                Log.e("AdMobInterstitial", "Ad failed to load: " + errorMsg);
-                AdFailedToLoad(errorMsg);
-            }
-        });
+    @SimpleFunction(description = "Has no effect: the ads SDK reads the App ID from the com.google.android.gms.ads.APPLICATION_ID meta-data in the app's manifest. Kept so existing projects still open.")
+    public void SetAppId(String appId) {
+        AdLog.w("AdMobInterstitial", "SetAppId has no effect; the App ID is read from the app's manifest");
     }
 
-    @SimpleFunction(description = "Show the interstitial ad if it's ready.")
-    public void ShowAd() {
-        activity.runOnUiThread(() -> {
-            if (interstitialAd != null) {
-                interstitialAd.show(activity);
-                interstitialAd.setFullScreenContentCallback(new FullScreenContentCallback() {
-                    @Override
-                    public void onAdDismissedFullScreenContent() {
-                        AdDismissed();
-                        interstitialAd = null;
-                    }
-
-                    @Override
-                    public void onAdFailedToShowFullScreenContent(AdError adError) {
-                        AdFailedToLoad(adError.getMessage());
-                        interstitialAd = null;
-                    }
-
-                    @Override
-                    public void onAdShowedFullScreenContent() {
-                        AdDisplayed();
-                    }
-                });
-            } else {
-                AdFailedToLoad("Ad not ready yet");
-            }
-        });
+    @SimpleFunction(description = "Set how many interstitial ads to keep preloaded (default 1).")
+    public void SetPreloadCount(int count) {
+        slot.pool.setCapacity(count);
     }
 
-    // Events
-    @SimpleEvent(description = "Triggered when AdMob SDK initializes successfully.")
-    public void AdInitialized() {
-        EventDispatcher.dispatchEvent(this, "AdInitialized");
+    @SimpleFunction(description = "Refill the preload pool automatically after each ad is shown (default true).")
+    public void SetAutoRefill(boolean enabled) {
+        slot.setAutoRefill(enabled);
     }
 
-    @SimpleEvent(description = "Triggered when an ad loads successfully.")
-    public void AdLoaded() {
-        EventDispatcher.dispatchEvent(this, "AdLoaded");
+    @SimpleFunction(description = "Returns how many loaded, unexpired interstitial ads are ready to show.")
+    public int PreloadedAdCount() {
+        return slot.pool.size();
     }
 
-    @SimpleEvent(description = "Triggered when an ad fails to load.")
-    public void AdFailedToLoad(String errorMessage) {
-        EventDispatcher.dispatchEvent(this, "AdFailedToLoad", errorMessage);
+    @SimpleFunction(description = "How many interstitial ads to keep preloaded on metered or slow networks (default 1).")
+    public void SetMeteredPreloadCount(int count) {
+        slot.setMeteredPreloadCount(count);
     }
 
-    @SimpleEvent(description = "Triggered when an ad is displayed.")
-    public void AdDisplayed() {
-        EventDispatcher.dispatchEvent(this, "AdDisplayed");
+    @SimpleFunction(description = "Milliseconds after an App Open ad during which no interstitial is shown. 0 (default) turns this off.")
+    public void SetAppOpenCooldown(int millis) {
+        FrequencyCap.setAppOpenCooldown(millis);
     }
 
     @SimpleEvent(description = "Triggered when the ad is dismissed by the user.")
     public void AdDismissed() {
         EventDispatcher.dispatchEvent(this, "AdDismissed");
     }
-}
\ No newline at end of file
+}
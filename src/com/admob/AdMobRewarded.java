@@ -1,18 +1,16 @@
 package com.admob;
 
 import android.app.Activity;
-import android.util.Log;
 import androidx.annotation.NonNull;
 import com.google.appinventor.components.annotations.*;
 import com.google.appinventor.components.common.ComponentCategory;
 import com.google.appinventor.components.runtime.*;
-import com.google.android.gms.ads.*;
-import com.google.android.gms.ads.initialization.InitializationStatus;
-import com.google.android.gms.ads.initialization.OnInitializationCompleteListener;
+import com.google.appinventor.components.runtime.util.YailList;
 import com.google.android.gms.ads.rewarded.RewardedAd;
-import com.google.android.gms.ads.rewarded.RewardedAdLoadCallback;
 import com.google.android.gms.ads.rewarded.OnUserEarnedRewardListener;
 import com.google.android.gms.ads.rewarded.RewardItem;
+import java.util.ArrayList;
+import java.util.List;
 
 @DesignerComponent(
     version = 1,
@@ -24,139 +22,99 @@ import com.google.android.gms.ads.rewarded.RewardItem;
 @SimpleObject(external = true)
 @UsesPermissions(permissionNames = "android.permission.INTERNET, android.permission.ACCESS_NETWORK_STATE")
 @UsesLibraries(libraries = "play-services-ads-lite.jar")
-public class AdMobRewarded extends AndroidNonvisibleComponent {
+public class AdMobRewarded extends AdMobFullScreenAd {
     private final Activity activity;
-    private RewardedAd rewardedAd;
-    private String adUnitId = "";
-    private String appId = "";
-    private boolean testMode = true;
+    private boolean ledgerEnabled;
+
+    private final OnUserEarnedRewardListener rewardListener = new OnUserEarnedRewardListener() {
+        @Override
+        public void onUserEarnedReward(@NonNull RewardItem rewardItem) {
+            String rewardType = rewardItem.getType();
+            int rewardAmount = rewardItem.getAmount();
+            // Only queues the write; the ledger's own thread does the disk I/O.
+            String rewardId = ledgerEnabled ? RewardLedger.record(rewardType, rewardAmount) : null;
+            AdTrace.record(AdMetrics.REWARDED, "reward", rewardType);
+            AdLog.d("AdMobRewarded", "User earned reward: ", rewardAmount, " ", rewardType);
+            RewardEarned(rewardType, rewardAmount);
+            if (rewardId != null) {
+                RewardRecorded(rewardId, rewardType, rewardAmount);
+            }
+        }
+    };
 
     public AdMobRewarded(ComponentContainer container) {
-        super(container.$form());
+        super(container, AdMetrics.REWARDED);
         this.activity = container.$context();
+        this.slot = new FullScreenSlot<RewardedAd>(activity, AdMetrics.REWARDED, "AdMobRewarded",
+                "ca-app-pub-3940256099942544/5224354917", AdPreloadPool.FULL_SCREEN_TTL_MS,
+                AdLoadScheduler.PRIORITY_REWARDED, "Ad not loaded yet",
+                GmsBackend.rewarded(activity), GmsBackend.rewardedAds(rewardListener), events);
     }
 
-    @SimpleFunction(description = "Set your AdMob App ID.")
-    public void SetAppId(String appId) {
-        this.appId = appId;
+    @Override
+    void dismissed() {
+        AdClosed();
     }
 
-    @SimpleFunction(description = "Set your Rewarded Ad Unit ID.")
-    public void SetAdUnitId(String adUnitId) {
-        this.adUnitId = adUnitId;
+    @SimpleFunction(description = "Has no effect: the ads SDK reads the App ID from the com.google.android.gms.ads.APPLICATION_ID meta-data in the app's manifest. Kept so existing projects still open.")
+    public void SetAppId(String appId) {
+        AdLog.w("AdMobRewarded", "SetAppId has no effect; the App ID is read from the app's manifest");
     }
 
-    @SimpleFunction(description = "Enable or disable test mode (true = test ads).")
-    public void SetTestMode(boolean testMode) {
-        this.testMode = testMode;
+    @SimpleFunction(description = "Set how many rewarded ads to keep preloaded (default 1).")
+    public void SetPreloadCount(int count) {
+        slot.pool.setCapacity(count);
     }
 
-    @SimpleFunction(description = "Initialize AdMob with your App ID.")
-    public void Initialize() {
-        String usedAppId = testMode
-            ? "ca-app-pub-3940256099942544~3347511713"  // Test App ID
-            : appId;
-
-        try {
-            MobileAds.initialize(activity, usedAppId, new OnInitializationCompleteListener() {
-                @Override
-                public void onInitializationComplete(InitializationStatus initializationStatus) {
-                    Log.d("AdMobRewarded", "AdMob initialized successfully");
-                    AdInitialized();
-                }
-            });
-        } catch (Exception e) {
-            Log.e("AdMobRewarded", "Error initializing AdMob: " + e.getMessage());
-            AdFailedToLoad("Initialization failed: " + e.getMessage());
-        }
+    @SimpleFunction(description = "Refill the preload pool automatically after each ad is shown (default true).")
+    public void SetAutoRefill(boolean enabled) {
+        slot.setAutoRefill(enabled);
     }
 
-    @SimpleFunction(description = "Load a rewarded ad.")
-    public void LoadAd() {
-        String usedAdUnit = testMode
-            ? "ca-app-pub-3940256099942544/5224354917"  // Test Rewarded Ad ID
-            : adUnitId;
-
-        AdRequest adRequest = new AdRequest.Builder().build();
-
-        RewardedAd.load(activity, usedAdUnit, adRequest, new RewardedAdLoadCallback() {
-            @Override
-            public void onAdLoaded(@NonNull RewardedAd ad) {
-                rewardedAd = ad;
-                Log.d("AdMobRewarded", "Rewarded ad loaded successfully");
-                AdLoaded();
-            }
-
-            @Override
-            public void onAdFailedToLoad(@NonNull LoadAdError adError) {
-                rewardedAd = null;
-                Log.e("AdMobRewarded", "Rewarded ad failed to load: " + adError.getMessage());
-                AdFailedToLoad(adError.getMessage());
-            }
-        });
+    @SimpleFunction(description = "Returns how many loaded, unexpired rewarded ads are ready to show.")
+    public int PreloadedAdCount() {
+        return slot.pool.size();
     }
 
-    @SimpleFunction(description = "Show the rewarded ad if loaded.")
-    public void ShowAd() {
-        activity.runOnUiThread(() -> {
-            if (rewardedAd != null) {
-                rewardedAd.show(activity, new OnUserEarnedRewardListener() {
-                    @Override
-                    public void onUserEarnedReward(@NonNull RewardItem rewardItem) {
-                        String rewardType = rewardItem.getType();
-                        int rewardAmount = rewardItem.getAmount();
-                        Log.d("AdMobRewarded", "User earned reward: " + rewardAmount + " " + rewardType);
-                        RewardEarned(rewardType, rewardAmount);
-                    }
-                });
-
-                rewardedAd.setFullScreenContentCallback(new FullScreenContentCallback() {
-                    @Override
-                    public void onAdShowedFullScreenContent() {
-                        AdDisplayed();
-                        Log.d("AdMobRewarded", "Rewarded ad displayed");
-                    }
-
-                    @Override
-                    public void onAdDismissedFullScreenContent() {
-                        AdClosed();
-                        rewardedAd = null;
-                        Log.d("AdMobRewarded", "Rewarded ad dismissed");
-                    }
+    @SimpleFunction(description = "How many rewarded ads to keep preloaded on metered or slow networks (default 1).")
+    public void SetMeteredPreloadCount(int count) {
+        slot.setMeteredPreloadCount(count);
+    }
 
+    @SimpleFunction(description = "Keep every earned reward in a crash-safe ledger on the device until it is acknowledged. "
+            + "PendingRewardsLoaded fires once rewards saved by earlier runs have been read.")
+    public void EnableRewardLedger() {
+        ledgerEnabled = true;
+        RewardLedger.open(activity, new RewardLedger.Listener() {
+            @Override
+            public void onLoaded(final int pending) {
+                slot.handler.post(new Runnable() {
                     @Override
-                    public void onAdFailedToShowFullScreenContent(AdError adError) {
-                        AdFailedToLoad(adError.getMessage());
-                        rewardedAd = null;
-                        Log.e("AdMobRewarded", "Failed to show rewarded ad: " + adError.getMessage());
+                    public void run() {
+                        PendingRewardsLoaded(pending);
                     }
                 });
-            } else {
-                AdFailedToLoad("Ad not loaded yet");
-                Log.e("AdMobRewarded", "Tried to show ad before loading");
             }
         });
     }
 
-    // Events for Kodular
-    @SimpleEvent(description = "Triggered when AdMob initializes successfully.")
-    public void AdInitialized() {
-        EventDispatcher.dispatchEvent(this, "AdInitialized");
-    }
-
-    @SimpleEvent(description = "Triggered when a rewarded ad loads successfully.")
-    public void AdLoaded() {
-        EventDispatcher.dispatchEvent(this, "AdLoaded");
+    @SimpleFunction(description = "Returns the unacknowledged rewards as a list of [reward ID, reward type, reward amount] lists.")
+    public YailList PendingRewards() {
+        List<YailList> rows = new ArrayList<>();
+        for (RewardLedger.Reward reward : RewardLedger.pending()) {
+            rows.add(YailList.makeList(new Object[]{reward.id, reward.type, reward.amount}));
+        }
+        return YailList.makeList(rows);
     }
 
-    @SimpleEvent(description = "Triggered when an ad fails to load.")
-    public void AdFailedToLoad(String errorMessage) {
-        EventDispatcher.dispatchEvent(this, "AdFailedToLoad", errorMessage);
+    @SimpleFunction(description = "Mark a reward as granted so it is not returned again. Returns false if the ID is unknown or already acknowledged.")
+    public boolean AcknowledgeReward(String rewardId) {
+        return RewardLedger.acknowledge(rewardId);
     }
 
-    @SimpleEvent(description = "Triggered when a rewarded ad is displayed.")
-    public void AdDisplayed() {
-        EventDispatcher.dispatchEvent(this, "AdDisplayed");
+    @SimpleFunction(description = "Number of rewards in the ledger that have not been acknowledged.")
+    public int PendingRewardCount() {
+        return RewardLedger.pendingCount();
     }
 
     @SimpleEvent(description = "Triggered when a rewarded ad is closed by the user.")
@@ -168,4 +126,14 @@ public class AdMobRewarded extends AndroidNonvisibleComponent {
     public void RewardEarned(String rewardType, int rewardAmount) {
         EventDispatcher.dispatchEvent(this, "RewardEarned", rewardType, rewardAmount);
     }
-}
\ No newline at end of file
+
+    @SimpleEvent(description = "Triggered after RewardEarned when the reward ledger is on, with the ID to pass to AcknowledgeReward once the reward is granted.")
+    public void RewardRecorded(String rewardId, String rewardType, int rewardAmount) {
+        EventDispatcher.dispatchEvent(this, "RewardRecorded", rewardId, rewardType, rewardAmount);
+    }
+
+    @SimpleEvent(description = "Triggered after EnableRewardLedger once rewards saved by earlier runs are available from PendingRewards.")
+    public void PendingRewardsLoaded(int pendingCount) {
+        EventDispatcher.dispatchEvent(this, "PendingRewardsLoaded", pendingCount);
+    }
+}
@@ -0,0 +1,182 @@
+package com.admob;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Keeps up to {@code capacity} loaded full-screen ads ready for one ad unit.
+ *
+ * Ads older than the pool's validity window are evicted lazily whenever the
+ * pool is read or refilled, so a stale ad is never handed out. Loads are
+ * started through the {@link Loader}, which reports back with
+ * {@link #offer(Object)} or {@link #loadFailed()}.
+ */
+final class AdPreloadPool<A> {
+
+    /** Interstitial and rewarded ads should be shown within an hour of loading. */
+    static final long FULL_SCREEN_TTL_MS = 60L * 60L * 1000L;
+
+    /** App Open ads stay valid for four hours after loading. */
+    static final long APP_OPEN_TTL_MS = 4L * 60L * 60L * 1000L;
+
+    interface Loader<A> {
+        void load(AdPreloadPool<A> pool);
+    }
+
+    private static final class Entry<A> {
+        final A ad;
+        final long loadedAt;
+
+        Entry(A ad, long loadedAt) {
+            this.ad = ad;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final ArrayDeque<Entry<A>> ready = new ArrayDeque<>();
+    private final Loader<A> loader;
+    private final long ttlMs;
+    private int capacity = 1;
+    private int inFlight;
+    private long lastPolledLoadedAt;
+    private volatile Runnable evictionListener;
+
+    AdPreloadPool(long ttlMs, Loader<A> loader) {
+        this.ttlMs = ttlMs;
+        this.loader = loader;
+    }
+
+    static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        while (ready.size() > this.capacity) {
+            ready.pollLast();
+        }
+    }
+
+    synchronized int capacity() {
+        return capacity;
+    }
+
+    /** Number of loaded, unexpired ads currently held. */
+    synchronized int size() {
+        evictExpired(now());
+        return ready.size();
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Removes and returns the oldest unexpired ad, or null when the pool is
+     * empty. Serving the oldest first keeps the rest of the pool furthest
+     * from its expiry.
+     */
+    synchronized A poll() {
+        evictExpired(now());
+        Entry<A> entry = ready.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        lastPolledLoadedAt = entry.loadedAt;
+        return entry.ad;
+    }
+
+    /** Load time, on the {@link #now()} clock, of the ad last returned by {@link #poll()}. */
+    synchronized long lastPolledLoadedAt() {
+        return lastPolledLoadedAt;
+    }
+
+    /** Starts as many loads as are needed to bring the pool back to capacity. */
+    void fill() {
+        fill(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #fill()} but stops at {@code limit} ads, ready or loading,
+     * when that is below capacity. Ads already loaded are kept either way.
+     */
+    void fill(int limit) {
+        int missing;
+        synchronized (this) {
+            evictExpired(now());
+            missing = Math.min(capacity, limit) - ready.size() - inFlight;
+            if (missing <= 0) {
+                return;
+            }
+            inFlight += missing;
+        }
+        for (int i = 0; i < missing; i++) {
+            loader.load(this);
+        }
+    }
+
+    /** Called by the loader when a load started by {@link #fill()} succeeds. */
+    synchronized void offer(A ad) {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+        if (ready.size() < capacity) {
+            ready.addLast(new Entry<>(ad, now()));
+        }
+    }
+
+    /** Called by the loader when a load started by {@link #fill()} fails. */
+    synchronized void loadFailed() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+    }
+
+    /** Drops every cached ad, e.g. after the ad unit changes. */
+    synchronized void clear() {
+        ready.clear();
+    }
+
+    /** Run after {@link #evictOldest()} drops an ad, outside the pool's lock. */
+    void setEvictionListener(Runnable listener) {
+        evictionListener = listener;
+    }
+
+    /** Load time of the oldest ready ad, or Long.MAX_VALUE when none is ready. */
+    synchronized long oldestLoadedAt() {
+        evictExpired(now());
+        Entry<A> oldest = ready.peekFirst();
+        return oldest == null ? Long.MAX_VALUE : oldest.loadedAt;
+    }
+
+    /** Milliseconds until the oldest ready ad expires, or -1 when none is ready. */
+    synchronized long nextExpiryIn() {
+        long now = now();
+        evictExpired(now);
+        Entry<A> oldest = ready.peekFirst();
+        return oldest == null ? -1 : Math.max(0, oldest.loadedAt + ttlMs - now);
+    }
+
+    /** Drops the oldest ready ad to free memory; false if there was none. */
+    boolean evictOldest() {
+        synchronized (this) {
+            if (ready.pollFirst() == null) {
+                return false;
+            }
+        }
+        Runnable listener = evictionListener;
+        if (listener != null) {
+            listener.run();
+        }
+        return true;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry<A>> it = ready.iterator();
+        while (it.hasNext()) {
+            if (now - it.next().loadedAt >= ttlMs) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.admob;
+
+import com.google.android.gms.ads.AdRequest;
+import com.google.android.gms.ads.MobileAds;
+import com.google.android.gms.ads.RequestConfiguration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Targeting shared by every AdMob component in the app.
+ *
+ * {@link AdRequest}s are immutable, so a single instance is built the first
+ * time it is needed and handed to every load until a setter changes the
+ * configuration. The {@link RequestConfiguration} part (test devices,
+ * content rating) is applied to the SDK once when initialization starts,
+ * and again whenever it is changed after that, including while
+ * initialization is still running.
+ */
+final class AdRequestConfig {
+
+    private static final Object lock = new Object();
+
+    private static List<String> keywords = Collections.emptyList();
+    private static String contentUrl = "";
+    private static List<String> testDeviceIds = Collections.emptyList();
+    private static String maxAdContentRating = RequestConfiguration.MAX_AD_CONTENT_RATING_UNSPECIFIED;
+    private static AdRequest request;
+    private static boolean applied;
+
+    private AdRequestConfig() {
+    }
+
+    /** The shared request for the current targeting. */
+    static AdRequest request() {
+        synchronized (lock) {
+            if (request == null) {
+                AdRequest.Builder builder = new AdRequest.Builder();
+                for (String keyword : keywords) {
+                    builder.addKeyword(keyword);
+                }
+                if (!contentUrl.isEmpty()) {
+                    builder.setContentUrl(contentUrl);
+                }
+                request = builder.build();
+            }
+            return request;
+        }
+    }
+
+    static void setKeywords(String[] values) {
+        synchronized (lock) {
+            keywords = nonEmpty(values);
+            request = null;
+        }
+    }
+
+    static void setContentUrl(String url) {
+        synchronized (lock) {
+            contentUrl = url == null ? "" : url.trim();
+            request = null;
+        }
+    }
+
+    static void setTestDeviceIds(String[] ids) {
+        boolean push;
+        synchronized (lock) {
+            testDeviceIds = nonEmpty(ids);
+            push = applied;
+        }
+        if (push) {
+            apply();
+        }
+    }
+
+    /** Accepts "G", "PG", "T" or "MA"; anything else clears the limit. */
+    static void setMaxAdContentRating(String rating) {
+        String value = rating == null ? "" : rating.trim().toUpperCase();
+        if (!Arrays.asList(RequestConfiguration.MAX_AD_CONTENT_RATING_G, RequestConfiguration.MAX_AD_CONTENT_RATING_PG,
+                RequestConfiguration.MAX_AD_CONTENT_RATING_T, RequestConfiguration.MAX_AD_CONTENT_RATING_MA).contains(value)) {
+            value = RequestConfiguration.MAX_AD_CONTENT_RATING_UNSPECIFIED;
+        }
+        boolean push;
+        synchronized (lock) {
+            maxAdContentRating = value;
+            push = applied;
+        }
+        if (push) {
+            apply();
+        }
+    }
+
+    /**
+     * Hands the SDK-wide settings to MobileAds; called just before it
+     * initializes, and by the setters for every change after that.
+     */
+    static void apply() {
+        // Under the lock, so a change made meanwhile is either in this push or pushes itself
+        // afterwards, and pushes from the init thread and a setter cannot land out of order.
+        synchronized (lock) {
+            applied = true;
+            MobileAds.setRequestConfiguration(new RequestConfiguration.Builder()
+                    .setTestDeviceIds(testDeviceIds)
+                    .setMaxAdContentRating(maxAdContentRating)
+                    .build());
+        }
+    }
+
+    private static List<String> nonEmpty(String[] values) {
+        List<String> out = new ArrayList<>();
+        if (values != null) {
+            for (String value : values) {
+                if (value != null && !value.trim().isEmpty()) {
+                    out.add(value.trim());
+                }
+            }
+        }
+        return Collections.unmodifiableList(out);
+    }
+}
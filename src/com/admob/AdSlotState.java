@@ -0,0 +1,73 @@
+package com.admob;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free IDLE → LOADING → LOADED → SHOWING state machine for one ad slot.
+ *
+ * Transitions are compare-and-set, so when two callers race only one wins
+ * and the loser learns it straight away: a second LoadAd while LOADING
+ * joins the request already in flight, and a second ShowAd while SHOWING
+ * is rejected. Transitions not listed in {@link #LEGAL} are refused with a
+ * table lookup before the CAS is attempted.
+ */
+final class AdSlotState {
+
+    static final int IDLE = 0;
+    static final int LOADING = 1;
+    static final int LOADED = 2;
+    static final int SHOWING = 3;
+
+    private static final String[] NAMES = {"IDLE", "LOADING", "LOADED", "SHOWING"};
+
+    // LEGAL[from][to]
+    private static final boolean[][] LEGAL = {
+            /* IDLE    */ {false, true, true, false},
+            /* LOADING */ {true, false, true, false},
+            /* LOADED  */ {true, true, false, true},
+            /* SHOWING */ {true, false, true, false},
+    };
+
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    int get() {
+        return state.get();
+    }
+
+    boolean is(int expected) {
+        return state.get() == expected;
+    }
+
+    /** Moves from {@code from} to {@code to} if that is legal and the slot is still in {@code from}. */
+    boolean transition(int from, int to) {
+        return LEGAL[from][to] && state.compareAndSet(from, to);
+    }
+
+    /**
+     * Re-derives IDLE, LOADING or LOADED from the cache after a load finishes
+     * or the cache changes. A slot that is SHOWING is left alone; use
+     * {@link #endShow} once the ad closes.
+     */
+    void settle(int ready, int inFlight) {
+        int target = derive(ready, inFlight);
+        while (true) {
+            int current = state.get();
+            if (current == SHOWING || current == target || state.compareAndSet(current, target)) {
+                return;
+            }
+        }
+    }
+
+    /** Leaves SHOWING for whatever the cache now supports. */
+    void endShow(int ready, int inFlight) {
+        state.compareAndSet(SHOWING, derive(ready, inFlight));
+    }
+
+    private static int derive(int ready, int inFlight) {
+        return ready > 0 ? LOADED : inFlight > 0 ? LOADING : IDLE;
+    }
+
+    String name() {
+        return NAMES[state.get()];
+    }
+}
@@ -0,0 +1,69 @@
+package com.admob;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of the most recent ad lifecycle events, for diagnostics
+ * in release builds without logcat.
+ *
+ * Writers claim a slot with one atomic increment and never lock or
+ * allocate, so recording is cheap enough for every SDK callback.
+ * {@link #dump} skips any slot that is overwritten while it reads.
+ */
+final class AdTrace {
+
+    static final int SIZE = 256;
+    private static final int MASK = SIZE - 1;
+
+    private static final AtomicLong cursor = new AtomicLong();
+    // Sequence number + 1 of the event in each slot; 0 while a slot is empty or being written.
+    private static final AtomicLongArray seqs = new AtomicLongArray(SIZE);
+    private static final AtomicLongArray times = new AtomicLongArray(SIZE);
+    private static final AtomicReferenceArray<String> sources = new AtomicReferenceArray<>(SIZE);
+    private static final AtomicReferenceArray<String> events = new AtomicReferenceArray<>(SIZE);
+    private static final AtomicReferenceArray<String> details = new AtomicReferenceArray<>(SIZE);
+
+    private AdTrace() {
+    }
+
+    /** Records an event; pass constants or strings that already exist, never a freshly built one. */
+    static void record(String source, String event, String detail) {
+        long seq = cursor.getAndIncrement();
+        int slot = (int) (seq & MASK);
+        seqs.set(slot, 0);
+        times.set(slot, AdPreloadPool.now());
+        sources.set(slot, source);
+        events.set(slot, event);
+        details.set(slot, detail);
+        seqs.set(slot, seq + 1);
+    }
+
+    /** The traced events, oldest first, one per line with its age in milliseconds. */
+    static String dump() {
+        long end = cursor.get();
+        long now = AdPreloadPool.now();
+        StringBuilder out = new StringBuilder();
+        for (long seq = Math.max(0, end - SIZE); seq < end; seq++) {
+            int slot = (int) (seq & MASK);
+            if (seqs.get(slot) != seq + 1) {
+                continue;
+            }
+            long at = times.get(slot);
+            String source = sources.get(slot);
+            String event = events.get(slot);
+            String detail = details.get(slot);
+            if (seqs.get(slot) != seq + 1) {
+                // Overwritten while we were reading it.
+                continue;
+            }
+            out.append('-').append(now - at).append("ms ").append(source).append(' ').append(event);
+            if (detail != null && !detail.isEmpty()) {
+                out.append(' ').append(detail);
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
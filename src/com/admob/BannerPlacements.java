@@ -0,0 +1,403 @@
+package com.admob;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import com.google.android.gms.ads.AdSize;
+import com.google.android.gms.ads.AdView;
+import com.google.appinventor.components.runtime.AndroidViewComponent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Banner placements rendered into arrangements, backed by a small pool of
+ * recycled AdViews.
+ *
+ * A placement gets a view only once it comes within the preload distance
+ * of the screen, and hands it back once it is twice that far away. A view
+ * that is handed back keeps its loaded ad, so the next placement to come
+ * into range shows that ad straight away instead of building a new WebView
+ * and sending a new request. At most {@code maxViews} AdViews exist at
+ * once; placements beyond that wait until one is handed back.
+ *
+ * Positions are rechecked at most once per frame after a scroll or layout
+ * pass. Everything here runs on the main thread.
+ */
+final class BannerPlacements {
+
+    static final int DEFAULT_MAX_VIEWS = 3;
+    static final int DEFAULT_PRELOAD_DISTANCE_DP = 200;
+
+    /** A view whose load failed is not asked again for this long. */
+    private static final long FAILED_RETRY_MS = 30000;
+
+    interface Host {
+        String adUnitId();
+
+        AdSize adSize();
+
+        int loadPriority();
+
+        /** False while loads should be held, e.g. offline. */
+        boolean canLoad();
+
+        void onLoaded(AndroidViewComponent arrangement);
+
+        void onFailed(AndroidViewComponent arrangement, String message);
+    }
+
+    private static final class Placement {
+        final AndroidViewComponent arrangement;
+        final ViewGroup container;
+        Banner banner;
+
+        Placement(AndroidViewComponent arrangement, ViewGroup container) {
+            this.arrangement = arrangement;
+            this.container = container;
+        }
+    }
+
+    private final class Banner implements AdLoader.Callback<AdView> {
+        final AdView view;
+        final String adUnitId;
+        final AdSize size;
+        final AdLoader<AdView> loader;
+        Placement placement;
+        AdLoadScheduler.Ticket ticket;
+        boolean loading;
+        boolean loaded;
+        boolean dead;
+        long failedAt;
+
+        Banner(String adUnitId, AdSize size) {
+            this.adUnitId = adUnitId;
+            this.size = size;
+            this.view = new AdView(activity);
+            view.setAdSize(size);
+            view.setAdUnitId(adUnitId);
+            this.loader = AdMetrics.metered(AdMetrics.BANNER, GmsBackend.banner(view));
+        }
+
+        @Override
+        public void onLoaded(AdView ad) {
+            finishTicket();
+            loading = false;
+            loaded = true;
+            if (placement != null) {
+                host.onLoaded(placement.arrangement);
+            }
+        }
+
+        @Override
+        public void onFailed(int code, String message) {
+            finishTicket();
+            loading = false;
+            failedAt = AdPreloadPool.now();
+            AdLog.e("AdMobBanner", "Placement banner failed to load: ", message);
+            if (placement != null) {
+                host.onFailed(placement.arrangement, message);
+            }
+        }
+
+        void finishTicket() {
+            if (ticket != null) {
+                ticket.finish();
+                ticket = null;
+            }
+        }
+
+        boolean matches(String unit, AdSize adSize) {
+            return adUnitId.equals(unit) && size.equals(adSize);
+        }
+    }
+
+    private final Activity activity;
+    private final Host host;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Placement> placements = new ArrayList<>();
+    private final List<Banner> idle = new ArrayList<>();
+    private final int[] location = new int[2];
+    private int viewCount;
+    private int maxViews = DEFAULT_MAX_VIEWS;
+    private int preloadDistancePx;
+    private boolean checkPosted;
+    private boolean paused;
+    private boolean destroyed;
+    private ViewTreeObserver observer;
+
+    private final Runnable checkTask = new Runnable() {
+        @Override
+        public void run() {
+            checkPosted = false;
+            check();
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            scheduleCheck();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener layoutListener =
+            new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            scheduleCheck();
+        }
+    };
+
+    BannerPlacements(Activity activity, Host host) {
+        this.activity = activity;
+        this.host = host;
+        setPreloadDistance(DEFAULT_PRELOAD_DISTANCE_DP);
+    }
+
+    void setMaxViews(int max) {
+        maxViews = Math.max(1, max);
+        Iterator<Banner> it = idle.iterator();
+        while (viewCount > maxViews && it.hasNext()) {
+            destroy(it.next());
+            it.remove();
+        }
+    }
+
+    void setPreloadDistance(int dp) {
+        float density = activity.getResources().getDisplayMetrics().density;
+        preloadDistancePx = Math.round(Math.max(0, dp) * density);
+        scheduleCheck();
+    }
+
+    /** Registers {@code arrangement}; returns false if it cannot hold views. */
+    boolean add(AndroidViewComponent arrangement) {
+        if (destroyed || !(arrangement.getView() instanceof ViewGroup)) {
+            return false;
+        }
+        if (find(arrangement) == null) {
+            placements.add(new Placement(arrangement, (ViewGroup) arrangement.getView()));
+        }
+        if (observer == null) {
+            observer = activity.getWindow().getDecorView().getViewTreeObserver();
+            observer.addOnScrollChangedListener(scrollListener);
+            observer.addOnGlobalLayoutListener(layoutListener);
+        }
+        scheduleCheck();
+        return true;
+    }
+
+    void remove(AndroidViewComponent arrangement) {
+        Placement placement = find(arrangement);
+        if (placement != null) {
+            release(placement);
+            placements.remove(placement);
+        }
+    }
+
+    int placementCount() {
+        return placements.size();
+    }
+
+    int viewCount() {
+        return viewCount;
+    }
+
+    /** Rechecks on the next frame, e.g. after the network comes back. */
+    void scheduleCheck() {
+        if (!checkPosted && !destroyed && !placements.isEmpty()) {
+            checkPosted = true;
+            handler.post(checkTask);
+        }
+    }
+
+    void pause() {
+        paused = true;
+        for (Placement placement : placements) {
+            if (placement.banner != null) {
+                placement.banner.view.pause();
+            }
+        }
+    }
+
+    void resume() {
+        paused = false;
+        for (Placement placement : placements) {
+            if (placement.banner != null) {
+                placement.banner.view.resume();
+            }
+        }
+        scheduleCheck();
+    }
+
+    void destroy() {
+        destroyed = true;
+        handler.removeCallbacks(checkTask);
+        if (observer != null && observer.isAlive()) {
+            observer.removeOnScrollChangedListener(scrollListener);
+            observer.removeOnGlobalLayoutListener(layoutListener);
+        }
+        observer = null;
+        for (Placement placement : placements) {
+            if (placement.banner != null) {
+                placement.container.removeView(placement.banner.view);
+                destroy(placement.banner);
+                placement.banner = null;
+            }
+        }
+        for (Banner banner : idle) {
+            destroy(banner);
+        }
+        placements.clear();
+        idle.clear();
+    }
+
+    private void check() {
+        if (paused || destroyed) {
+            return;
+        }
+        View decor = activity.getWindow().getDecorView();
+        int width = decor.getWidth();
+        int height = decor.getHeight();
+        // Hand views back first so placements coming into range can take them.
+        for (Placement placement : placements) {
+            if (placement.banner != null && !near(placement, 2 * preloadDistancePx, width, height)) {
+                release(placement);
+            }
+        }
+        for (Placement placement : placements) {
+            if (!near(placement, preloadDistancePx, width, height)) {
+                continue;
+            }
+            if (placement.banner == null && !attach(placement)) {
+                continue;
+            }
+            Banner banner = placement.banner;
+            if (!banner.loaded && !banner.loading
+                    && AdPreloadPool.now() - banner.failedAt >= FAILED_RETRY_MS) {
+                load(banner, !near(placement, 0, width, height));
+            }
+        }
+    }
+
+    private boolean near(Placement placement, int margin, int width, int height) {
+        ViewGroup container = placement.container;
+        if (!container.isShown()) {
+            return false;
+        }
+        container.getLocationOnScreen(location);
+        int left = location[0];
+        int top = location[1];
+        return top + container.getHeight() >= -margin && top <= height + margin
+                && left + container.getWidth() >= -margin && left <= width + margin;
+    }
+
+    private boolean attach(Placement placement) {
+        Banner banner = acquire(host.adUnitId(), host.adSize());
+        if (banner == null) {
+            return false;
+        }
+        banner.placement = placement;
+        placement.banner = banner;
+        placement.container.addView(banner.view, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT));
+        banner.view.resume();
+        if (banner.loaded) {
+            // A recycled view still holds its ad; show it without a new request.
+            AdTrace.record(AdMetrics.BANNER, "placement_reused", banner.adUnitId);
+            final AndroidViewComponent arrangement = placement.arrangement;
+            // Posted so the event handler may add or remove placements mid-check.
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    host.onLoaded(arrangement);
+                }
+            });
+        }
+        return true;
+    }
+
+    private void release(Placement placement) {
+        Banner banner = placement.banner;
+        if (banner == null) {
+            return;
+        }
+        placement.container.removeView(banner.view);
+        banner.view.pause();
+        banner.placement = null;
+        placement.banner = null;
+        idle.add(banner);
+    }
+
+    /** An idle view for this unit and size, preferring one with an ad; else a new one if the pool allows. */
+    private Banner acquire(String adUnitId, AdSize size) {
+        Banner match = null;
+        Iterator<Banner> it = idle.iterator();
+        while (it.hasNext()) {
+            Banner banner = it.next();
+            if (!banner.matches(adUnitId, size)) {
+                // Unit or size changed since this view was made; it can never be reused.
+                destroy(banner);
+                it.remove();
+            } else if (match == null || (banner.loaded && !match.loaded)) {
+                match = banner;
+            }
+        }
+        if (match != null) {
+            idle.remove(match);
+            return match;
+        }
+        if (viewCount >= maxViews) {
+            return null;
+        }
+        viewCount++;
+        AdTrace.record(AdMetrics.BANNER, "placement_view", adUnitId);
+        return new Banner(adUnitId, size);
+    }
+
+    private void load(final Banner banner, boolean preload) {
+        if (!host.canLoad()) {
+            return;
+        }
+        banner.loading = true;
+        AdLoadScheduler.submit(host.loadPriority(), preload, new AdLoadScheduler.Task() {
+            @Override
+            public void start(final AdLoadScheduler.Ticket ticket) {
+                activity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (destroyed || banner.dead) {
+                            banner.loading = false;
+                            ticket.finish();
+                            return;
+                        }
+                        banner.ticket = ticket;
+                        banner.loader.load(banner.adUnitId, banner);
+                    }
+                });
+            }
+        });
+    }
+
+    private void destroy(Banner banner) {
+        banner.dead = true;
+        banner.finishTicket();
+        banner.view.destroy();
+        viewCount--;
+    }
+
+    private Placement find(AndroidViewComponent arrangement) {
+        for (Placement placement : placements) {
+            if (placement.arrangement == arrangement) {
+                return placement;
+            }
+        }
+        return null;
+    }
+}
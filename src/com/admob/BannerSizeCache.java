@@ -0,0 +1,47 @@
+package com.admob;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import com.google.android.gms.ads.AdSize;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches anchored adaptive banner sizes by orientation and width.
+ *
+ * Computing an adaptive size reads display metrics and asks the SDK for a
+ * height; the answer only changes with orientation or available width, so
+ * loads and rotations after the first reuse the cached {@link AdSize}.
+ * The screen width comes straight from the {@link Configuration}, which
+ * already holds it in dp.
+ */
+final class BannerSizeCache {
+
+    private static final Map<Integer, AdSize> sizes = new HashMap<>();
+
+    private BannerSizeCache() {
+    }
+
+    /**
+     * Returns the anchored adaptive size for {@code widthDp}, or for the full
+     * screen width when {@code widthDp} is not positive.
+     */
+    static AdSize adaptiveSize(Context context, int widthDp) {
+        Configuration config = context.getResources().getConfiguration();
+        if (widthDp <= 0) {
+            widthDp = config.screenWidthDp;
+        }
+        int key = (config.orientation << 16) | (widthDp & 0xFFFF);
+        synchronized (sizes) {
+            AdSize size = sizes.get(key);
+            if (size == null) {
+                size = config.orientation == Configuration.ORIENTATION_LANDSCAPE
+                        ? AdSize.getLandscapeAnchoredAdaptiveBannerAdSize(context, widthDp)
+                        : AdSize.getPortraitAnchoredAdaptiveBannerAdSize(context, widthDp);
+                sizes.put(key, size);
+            }
+            return size;
+        }
+    }
+}
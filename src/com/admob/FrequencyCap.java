@@ -0,0 +1,306 @@
+package com.admob;
+
+import android.content.Context;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App-wide frequency caps and pacing for full-screen ads.
+ *
+ * Each format can have a minimum interval between shows and a maximum
+ * number of shows per rolling hour and per rolling day; interstitials can
+ * additionally be held off for a cool-down after an App Open ad. Limits
+ * are configured per run from blocks, while the show history is kept on
+ * disk so caps hold across restarts.
+ *
+ * All checks are in memory. The history file is read once, off the main
+ * thread, when the first component attaches, and changes are written back
+ * in one batch a short while after the last show, also off the main thread.
+ * Timestamps are wall-clock because they have to survive a reboot.
+ */
+final class FrequencyCap {
+
+    private static final String TAG = "AdMobFrequencyCap";
+    private static final String FILE_NAME = "admob_frequency_cap";
+    private static final long HOUR_MS = 60L * 60L * 1000L;
+    private static final long DAY_MS = 24L * HOUR_MS;
+    private static final long FLUSH_DELAY_MS = 2000;
+
+    /** Loads wait while capped, but start this long before the cap lifts so an ad is ready then. */
+    static final long PRELOAD_LEAD_MS = 60000;
+
+    private static final class Policy {
+        long minIntervalMs;
+        int maxPerHour;
+        int maxPerDay;
+    }
+
+    private static final Object lock = new Object();
+    private static final Map<String, Policy> policies = new HashMap<>();
+    // Show times within the last day, oldest first, per format.
+    private static final Map<String, ArrayDeque<Long>> shows = new HashMap<>();
+    private static long appOpenCooldownMs;
+
+    private static ScheduledExecutorService io;
+    private static File file;
+    private static boolean flushScheduled;
+
+    private FrequencyCap() {
+    }
+
+    /** Starts loading the saved history; only the first call does anything. */
+    static void attach(final Context context) {
+        synchronized (lock) {
+            if (io != null) {
+                return;
+            }
+            io = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                File target = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+                List<String[]> saved = read(target);
+                synchronized (lock) {
+                    file = target;
+                    for (String[] entry : saved) {
+                        history(entry[0]).add(Long.parseLong(entry[1]));
+                    }
+                    for (ArrayDeque<Long> times : shows.values()) {
+                        sort(times);
+                    }
+                }
+            }
+        });
+    }
+
+    static void setMinInterval(String format, long ms) {
+        synchronized (lock) {
+            policy(format).minIntervalMs = Math.max(0, ms);
+        }
+    }
+
+    /** 0 means no limit. */
+    static void setMaxPerHour(String format, int max) {
+        synchronized (lock) {
+            policy(format).maxPerHour = Math.max(0, max);
+        }
+    }
+
+    /** 0 means no limit. */
+    static void setMaxPerDay(String format, int max) {
+        synchronized (lock) {
+            policy(format).maxPerDay = Math.max(0, max);
+        }
+    }
+
+    static void setAppOpenCooldown(long ms) {
+        synchronized (lock) {
+            appOpenCooldownMs = Math.max(0, ms);
+        }
+    }
+
+    static boolean allowShow(String format) {
+        return waitMs(format) == 0;
+    }
+
+    /** Milliseconds until {@code format} may be shown again, 0 if it may be shown now. */
+    static long waitMs(String format) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            long until = 0;
+            Policy policy = policies.get(format);
+            ArrayDeque<Long> times = shows.get(format);
+            if (policy != null && times != null && !times.isEmpty()) {
+                prune(times, now);
+                if (!times.isEmpty() && policy.minIntervalMs > 0) {
+                    until = Math.max(until, times.peekLast() + policy.minIntervalMs);
+                }
+                if (policy.maxPerHour > 0) {
+                    until = Math.max(until, reopensAt(times, policy.maxPerHour, now - HOUR_MS, HOUR_MS));
+                }
+                if (policy.maxPerDay > 0) {
+                    until = Math.max(until, reopensAt(times, policy.maxPerDay, now - DAY_MS, DAY_MS));
+                }
+            }
+            if (AdMetrics.INTERSTITIAL.equals(format) && appOpenCooldownMs > 0) {
+                ArrayDeque<Long> appOpen = shows.get(AdMetrics.APP_OPEN);
+                if (appOpen != null && !appOpen.isEmpty()) {
+                    until = Math.max(until, appOpen.peekLast() + appOpenCooldownMs);
+                }
+            }
+            return until > now ? until - now : 0;
+        }
+    }
+
+    /** Call when an ad of {@code format} actually appears on screen. */
+    static void recordShow(String format) {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            ArrayDeque<Long> times = history(format);
+            times.addLast(now);
+            prune(times, now);
+            if (io == null || flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        io.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static int showsInLastDay(String format) {
+        return countSince(format, System.currentTimeMillis() - DAY_MS);
+    }
+
+    private static int countSince(String format, long since) {
+        synchronized (lock) {
+            ArrayDeque<Long> times = shows.get(format);
+            if (times == null) {
+                return 0;
+            }
+            int n = 0;
+            for (long t : times) {
+                if (t > since) {
+                    n++;
+                }
+            }
+            return n;
+        }
+    }
+
+    /** When the {@code max}-th most recent show inside the window drops out of it. */
+    static long reopensAt(ArrayDeque<Long> times, int max, long windowStart, long windowMs) {
+        int inWindow = 0;
+        for (long t : times) {
+            if (t > windowStart) {
+                inWindow++;
+            }
+        }
+        if (inWindow < max) {
+            return 0;
+        }
+        // The oldest show that still counts against the cap.
+        int skip = inWindow - max;
+        for (long t : times) {
+            if (t > windowStart && skip-- == 0) {
+                return t + windowMs;
+            }
+        }
+        return 0;
+    }
+
+    private static void prune(ArrayDeque<Long> times, long now) {
+        while (!times.isEmpty() && times.peekFirst() <= now - DAY_MS) {
+            times.pollFirst();
+        }
+    }
+
+    private static void sort(ArrayDeque<Long> times) {
+        List<Long> sorted = new ArrayList<>(times);
+        Collections.sort(sorted);
+        times.clear();
+        times.addAll(sorted);
+    }
+
+    private static Policy policy(String format) {
+        Policy policy = policies.get(format);
+        if (policy == null) {
+            policy = new Policy();
+            policies.put(format, policy);
+        }
+        return policy;
+    }
+
+    private static ArrayDeque<Long> history(String format) {
+        ArrayDeque<Long> times = shows.get(format);
+        if (times == null) {
+            times = new ArrayDeque<>();
+            shows.put(format, times);
+        }
+        return times;
+    }
+
+    private static void flush() {
+        File target;
+        StringBuilder out = new StringBuilder();
+        synchronized (lock) {
+            flushScheduled = false;
+            target = file;
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, ArrayDeque<Long>> entry : shows.entrySet()) {
+                prune(entry.getValue(), now);
+                for (long t : entry.getValue()) {
+                    out.append(entry.getKey()).append(' ').append(t).append('\n');
+                }
+            }
+        }
+        if (target == null) {
+            return;
+        }
+        // Write a sibling file and rename it over the old one so a crash mid-write keeps the old history.
+        File tmp = new File(target.getPath() + ".tmp");
+        try {
+            Writer writer = new FileWriter(tmp);
+            try {
+                writer.write(out.toString());
+            } finally {
+                writer.close();
+            }
+            if (!tmp.renameTo(target)) {
+                AdLog.w(TAG, "Could not save frequency cap history");
+            }
+        } catch (IOException e) {
+            AdLog.w(TAG, "Could not save frequency cap history: ", e.getMessage());
+        }
+    }
+
+    private static List<String[]> read(File source) {
+        List<String[]> entries = new ArrayList<>();
+        if (!source.exists()) {
+            return entries;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(source));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.trim().split(" ");
+                    if (parts.length == 2 && parts[1].matches("\\d+")) {
+                        entries.add(parts);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            AdLog.w(TAG, "Could not read frequency cap history: ", e.getMessage());
+        }
+        return entries;
+    }
+}
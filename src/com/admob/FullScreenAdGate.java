@@ -0,0 +1,34 @@
+package com.admob;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide record of whether any of our full-screen ads is on screen.
+ *
+ * Showing a full-screen ad pauses and later resumes the host activity, so
+ * lifecycle-driven code (the App Open auto-show in particular) checks here
+ * to tell an ad round-trip apart from the user leaving and returning.
+ */
+final class FullScreenAdGate {
+
+    private static final AtomicInteger showing = new AtomicInteger();
+
+    private FullScreenAdGate() {
+    }
+
+    /** Call immediately before {@code show()} so the pause it causes is attributed to the ad. */
+    static void onShowing() {
+        showing.incrementAndGet();
+    }
+
+    /** Call when a shown ad is dismissed or fails to show. */
+    static void onDismissed() {
+        if (showing.decrementAndGet() < 0) {
+            showing.set(0);
+        }
+    }
+
+    static boolean isShowing() {
+        return showing.get() > 0;
+    }
+}
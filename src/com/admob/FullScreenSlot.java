@@ -0,0 +1,481 @@
+package com.admob;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import com.google.android.gms.ads.AdError;
+import com.google.android.gms.ads.FullScreenContentCallback;
+
+/**
+ * The load and show engine shared by the interstitial, rewarded and App Open
+ * components.
+ *
+ * One slot owns a preload pool filled through a hedged waterfall, the retry
+ * policy, the slot state and the network, frequency-cap and cache-budget
+ * hooks. Components keep only their blocks and events: they describe their
+ * ad type with {@link Ads} and hear back through {@link Events}.
+ *
+ * Every unit request of a waterfall, hedges included, waits for its own
+ * {@link AdLoadScheduler} ticket, so hedging never takes the app past the
+ * process-wide in-flight cap.
+ */
+final class FullScreenSlot<A> {
+
+    /** The calls the slot needs on a loaded ad; the ad SDK gives the formats no common type. */
+    interface Ads<A> {
+        String adUnitId(A ad);
+
+        void attach(A ad, FullScreenContentCallback callback);
+
+        void show(A ad, Activity activity);
+    }
+
+    interface Events {
+        void onInitialized();
+
+        void onLoaded();
+
+        /** A load, a show or initialization failed; the message says which. */
+        void onFailed(String message);
+
+        void onDisplayed();
+
+        void onDismissed();
+    }
+
+    final Handler handler = new Handler(Looper.getMainLooper());
+    final RetryPolicy retry = new RetryPolicy();
+    final AdSlotState state = new AdSlotState();
+    final AdPreloadPool<A> pool;
+    final HedgedWaterfall<A> waterfall;
+
+    private final Activity activity;
+    private final String format;
+    private final String tag;
+    private final String testAdUnitId;
+    private final String notReadyMessage;
+    private final Ads<A> ads;
+    private final Events events;
+    private final AdLoader<A> loader;
+
+    private int loadPriority;
+    private String[] adUnitIds = {""};
+    private boolean testMode = true;
+    private boolean autoRefill = true;
+    private int meteredPreloadCount = 1;
+    private boolean networkAware = true;
+    private boolean waitingForNetwork;
+    private boolean loadRequested;
+    private boolean destroyed;
+    /** Bumped when the unit or test mode changes; loads started before that are dropped when they land. */
+    private int generation;
+    private long showRequestedAt;
+    private long shownAdLoadedAt;
+    private AdMetrics.Stats showingStats;
+
+    private final NetworkMonitor.Listener networkListener = new NetworkMonitor.Listener() {
+        @Override
+        public void onNetworkChanged(int type) {
+            if (!networkAware || type == NetworkMonitor.OFFLINE) {
+                return;
+            }
+            if (waitingForNetwork) {
+                // Failures while offline say nothing about the ad units; start over without backoff.
+                waitingForNetwork = false;
+                retry.reset();
+                requestFill();
+            } else if (type == NetworkMonitor.UNMETERED && loadRequested && autoRefill) {
+                // Back on an unmetered network: top the pool up to its full depth.
+                requestFill();
+            }
+        }
+    };
+
+    private final Runnable retryTask = new Runnable() {
+        @Override
+        public void run() {
+            requestFill();
+        }
+    };
+
+    private final HedgedWaterfall.Timer timer = new HedgedWaterfall.Timer() {
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            handler.postDelayed(task, delayMs);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            handler.removeCallbacks(task);
+        }
+    };
+
+    // Attached to each ad as it loads; one instance serves every ad this slot shows.
+    private final FullScreenContentCallback contentCallback = new FullScreenContentCallback() {
+        @Override
+        public void onAdShowedFullScreenContent() {
+            AdTrace.record(format, "shown", null);
+            FrequencyCap.recordShow(format);
+            if (showingStats != null) {
+                showingStats.recordShow(AdPreloadPool.now() - showRequestedAt, showRequestedAt - shownAdLoadedAt);
+            }
+            events.onDisplayed();
+        }
+
+        @Override
+        public void onAdDismissedFullScreenContent() {
+            AdTrace.record(format, "dismissed", null);
+            FullScreenAdGate.onDismissed();
+            state.endShow(pool.size(), pool.inFlight());
+            events.onDismissed();
+            refill();
+        }
+
+        @Override
+        public void onAdFailedToShowFullScreenContent(AdError adError) {
+            AdTrace.record(format, "show_failed", adError.getMessage());
+            AdLog.e(tag, "Ad failed to show: ", adError.getMessage());
+            FullScreenAdGate.onDismissed();
+            state.endShow(pool.size(), pool.inFlight());
+            events.onFailed(adError.getMessage());
+            refill();
+        }
+    };
+
+    private final Runnable showTask = new Runnable() {
+        @Override
+        public void run() {
+            if (destroyed) {
+                return;
+            }
+            if (!FrequencyCap.allowShow(format)) {
+                AdTrace.record(format, "capped", null);
+                events.onFailed("Frequency cap reached");
+                return;
+            }
+            if (!state.transition(AdSlotState.LOADED, AdSlotState.SHOWING)) {
+                events.onFailed(state.is(AdSlotState.SHOWING) ? "Ad already showing" : notReadyMessage);
+                return;
+            }
+            if (!showPolled()) {
+                // Everything cached expired since the state said LOADED.
+                events.onFailed(notReadyMessage);
+            }
+        }
+    };
+
+    // Ads only expire lazily, so wake up when the oldest one does and replace it.
+    private final Runnable expiryTask = new Runnable() {
+        @Override
+        public void run() {
+            state.settle(pool.size(), pool.inFlight());
+            refill();
+            scheduleExpiry();
+        }
+    };
+
+    private final Runnable fillTask = new Runnable() {
+        @Override
+        public void run() {
+            requestFill();
+        }
+    };
+
+    FullScreenSlot(Activity activity, String format, String tag, String testAdUnitId, long ttlMs,
+            int loadPriority, String notReadyMessage, AdLoader<A> loader, Ads<A> ads, Events events) {
+        this.activity = activity;
+        this.format = format;
+        this.tag = tag;
+        this.testAdUnitId = testAdUnitId;
+        this.loadPriority = loadPriority;
+        this.notReadyMessage = notReadyMessage;
+        this.ads = ads;
+        this.events = events;
+        AdMobInitializer.markCreated();
+        this.pool = new AdPreloadPool<>(ttlMs, new AdPreloadPool.Loader<A>() {
+            @Override
+            public void load(AdPreloadPool<A> pool) {
+                loadOne(pool);
+            }
+        });
+        this.loader = AdMetrics.metered(format, loader);
+        this.waterfall = new HedgedWaterfall<>(this.loader, timer);
+        FrequencyCap.attach(activity);
+        NetworkMonitor.attach(activity);
+        NetworkMonitor.addListener(networkListener);
+        pool.setEvictionListener(new Runnable() {
+            @Override
+            public void run() {
+                state.settle(pool.size(), pool.inFlight());
+            }
+        });
+        AdCacheBudget.register(activity, pool);
+    }
+
+    void setAdUnitIds(String[] adUnitIds) {
+        this.adUnitIds = adUnitIds;
+        generation++;
+        pool.clear();
+        state.settle(pool.size(), pool.inFlight());
+    }
+
+    void setTestMode(boolean testMode) {
+        this.testMode = testMode;
+        generation++;
+        pool.clear();
+        state.settle(pool.size(), pool.inFlight());
+    }
+
+    void setAutoRefill(boolean enabled) {
+        autoRefill = enabled;
+    }
+
+    void setLoadPriority(int priority) {
+        loadPriority = AdLoadScheduler.clampPriority(priority);
+    }
+
+    void setNetworkAware(boolean enabled) {
+        networkAware = enabled;
+    }
+
+    void setMeteredPreloadCount(int count) {
+        meteredPreloadCount = Math.max(1, count);
+    }
+
+    void initialize() {
+        AdMobInitializer.initialize(activity, new AdMobInitializer.Callback() {
+            @Override
+            public void onInitialized() {
+                AdLog.d(tag, "AdMob initialized successfully");
+                events.onInitialized();
+            }
+
+            @Override
+            public void onInitializationFailed(String message) {
+                events.onFailed(message);
+            }
+        });
+    }
+
+    /** Loads until the pool is full, once the SDK is initialized. */
+    void load() {
+        AdMobInitializer.runWhenInitialized(activity, fillTask);
+    }
+
+    /** Shows the next cached ad, or reports through {@link Events#onFailed} why it can't. */
+    void show() {
+        if (destroyed) {
+            return;
+        }
+        showRequestedAt = AdPreloadPool.now();
+        activity.runOnUiThread(showTask);
+    }
+
+    /**
+     * Shows the next cached ad if one is ready, no other full-screen ad is on
+     * screen and the frequency caps allow it. Reports nothing when it can't,
+     * for shows the app did not ask for.
+     */
+    boolean showIfReady() {
+        if (destroyed) {
+            return false;
+        }
+        showRequestedAt = AdPreloadPool.now();
+        if (FullScreenAdGate.isShowing() || !FrequencyCap.allowShow(format)
+                || !state.transition(AdSlotState.LOADED, AdSlotState.SHOWING)) {
+            return false;
+        }
+        return showPolled();
+    }
+
+    /** Call after moving to SHOWING. */
+    private boolean showPolled() {
+        A ad = pool.poll();
+        if (ad == null) {
+            state.endShow(pool.size(), pool.inFlight());
+            refill();
+            return false;
+        }
+        String adUnitId = ads.adUnitId(ad);
+        showingStats = AdMetrics.forUnit(format, adUnitId);
+        shownAdLoadedAt = pool.lastPolledLoadedAt();
+        AdTrace.record(format, "show", adUnitId);
+        FullScreenAdGate.onShowing();
+        ads.show(ad, activity);
+        return true;
+    }
+
+    void destroy() {
+        AdTrace.record(format, "destroyed", null);
+        destroyed = true;
+        // Answers still on their way are dropped with the runs; nothing may launch or retry after this.
+        waterfall.cancel();
+        // Drops pending retries, hedges and refills along with everything else posted by this slot.
+        handler.removeCallbacksAndMessages(null);
+        NetworkMonitor.removeListener(networkListener);
+        AdCacheBudget.unregister(pool);
+        pool.clear();
+        state.settle(0, 0);
+    }
+
+    private void loadOne(final AdPreloadPool<A> pool) {
+        if (destroyed) {
+            pool.loadFailed();
+            return;
+        }
+        final int startedIn = generation;
+        // An ad already in the pool makes this a preload that can wait.
+        waterfall.run(adUnits(), scheduled(loadPriority, pool.size() > 0), new HedgedWaterfall.Listener<A>() {
+            @Override
+            public void onLoaded(A ad, String adUnitId) {
+                if (destroyed) {
+                    // The screen went away while this load was in flight; let the ad go.
+                    pool.loadFailed();
+                    return;
+                }
+                if (startedIn != generation) {
+                    // Loaded for a unit or test mode since replaced; never show it.
+                    dropStale();
+                    return;
+                }
+                ads.attach(ad, contentCallback);
+                pool.offer(ad);
+                AdCacheBudget.enforce();
+                state.settle(pool.size(), pool.inFlight());
+                scheduleExpiry();
+                retry.onSuccess();
+                AdLog.d(tag, "Ad loaded successfully");
+                events.onLoaded();
+            }
+
+            @Override
+            public void onFailed(String message) {
+                if (startedIn != generation) {
+                    // Says nothing about the current unit; no backoff and no event.
+                    dropStale();
+                    return;
+                }
+                pool.loadFailed();
+                state.settle(pool.size(), pool.inFlight());
+                scheduleRetry();
+                AdLog.e(tag, "Ad failed to load: ", message);
+                events.onFailed(message);
+            }
+        });
+    }
+
+    /** Releases a stale load's place in the pool and loads for the current configuration instead. */
+    private void dropStale() {
+        AdTrace.record(format, "stale_dropped", null);
+        pool.loadFailed();
+        state.settle(pool.size(), pool.inFlight());
+        if (loadRequested) {
+            refill();
+        }
+    }
+
+    /** The slot's loader with each request holding a scheduler ticket from start to answer. */
+    private AdLoader<A> scheduled(final int priority, final boolean preload) {
+        return new AdLoader<A>() {
+            @Override
+            public void load(final String adUnitId, final Callback<A> callback) {
+                AdLoadScheduler.submit(priority, preload, new AdLoadScheduler.Task() {
+                    @Override
+                    public void start(final AdLoadScheduler.Ticket ticket) {
+                        if (Looper.myLooper() == Looper.getMainLooper()) {
+                            startLoad(adUnitId, ticket, callback);
+                            return;
+                        }
+                        // Started by the scheduler's timeout wake-up; the SDK wants loads on the main thread.
+                        handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                startLoad(adUnitId, ticket, callback);
+                            }
+                        });
+                    }
+                });
+            }
+        };
+    }
+
+    private void startLoad(String adUnitId, final AdLoadScheduler.Ticket ticket, final AdLoader.Callback<A> callback) {
+        if (destroyed) {
+            ticket.finish();
+            return;
+        }
+        loader.load(adUnitId, new AdLoader.Callback<A>() {
+            @Override
+            public void onLoaded(A ad) {
+                ticket.finish();
+                callback.onLoaded(ad);
+            }
+
+            @Override
+            public void onFailed(int code, String message) {
+                ticket.finish();
+                callback.onFailed(code, message);
+            }
+        });
+    }
+
+    private String[] adUnits() {
+        return testMode ? new String[] {testAdUnitId} : adUnitIds;
+    }
+
+    private void requestFill() {
+        if (destroyed) {
+            return;
+        }
+        handler.removeCallbacks(retryTask);
+        loadRequested = true;
+        if (networkAware && NetworkMonitor.isOffline()) {
+            // Hold loads and retries alike until the network listener sees a connection again.
+            waitingForNetwork = true;
+            return;
+        }
+        long wait = retry.waitMs();
+        if (wait > 0) {
+            // Backing off or circuit open: fold this request into the pending retry.
+            handler.postDelayed(retryTask, wait);
+            return;
+        }
+        long capped = FrequencyCap.waitMs(format) - FrequencyCap.PRELOAD_LEAD_MS;
+        if (capped > 0) {
+            // An ad loaded now could not be shown yet; load it shortly before the cap lifts instead.
+            handler.postDelayed(retryTask, capped);
+            return;
+        }
+        // fill() only starts what capacity minus ready minus in-flight allows, so a call made
+        // while loads are in flight tops the pool up rather than duplicating them.
+        state.transition(AdSlotState.IDLE, AdSlotState.LOADING);
+        int limit = networkAware && NetworkMonitor.isConstrained() ? meteredPreloadCount : pool.capacity();
+        pool.fill(Math.min(limit, AdCacheBudget.fillLimit(pool)));
+        state.settle(pool.size(), pool.inFlight());
+    }
+
+    private void scheduleRetry() {
+        if (destroyed) {
+            return;
+        }
+        long delay = retry.onFailure();
+        if (delay >= 0) {
+            handler.removeCallbacks(retryTask);
+            handler.postDelayed(retryTask, delay);
+        }
+    }
+
+    private void scheduleExpiry() {
+        handler.removeCallbacks(expiryTask);
+        long delay = pool.nextExpiryIn();
+        if (delay >= 0) {
+            handler.postDelayed(expiryTask, delay);
+        }
+    }
+
+    private void refill() {
+        if (autoRefill) {
+            requestFill();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.admob;
+
+import android.app.Activity;
+import android.content.Context;
+import androidx.annotation.NonNull;
+import com.google.android.gms.ads.AdListener;
+import com.google.android.gms.ads.AdView;
+import com.google.android.gms.ads.FullScreenContentCallback;
+import com.google.android.gms.ads.LoadAdError;
+import com.google.android.gms.ads.MobileAds;
+import com.google.android.gms.ads.appopen.AppOpenAd;
+import com.google.android.gms.ads.initialization.InitializationStatus;
+import com.google.android.gms.ads.initialization.OnInitializationCompleteListener;
+import com.google.android.gms.ads.interstitial.InterstitialAd;
+import com.google.android.gms.ads.interstitial.InterstitialAdLoadCallback;
+import com.google.android.gms.ads.rewarded.OnUserEarnedRewardListener;
+import com.google.android.gms.ads.rewarded.RewardedAd;
+import com.google.android.gms.ads.rewarded.RewardedAdLoadCallback;
+
+/**
+ * The only place that calls the Google Mobile Ads statics. Everything else
+ * goes through {@link AdLoader}s and {@link FullScreenSlot.Ads} built here.
+ */
+final class GmsBackend {
+
+    private GmsBackend() {
+    }
+
+    static void initialize(Context context, final Runnable onComplete) {
+        AdRequestConfig.apply();
+        MobileAds.initialize(context.getApplicationContext(), new OnInitializationCompleteListener() {
+            @Override
+            public void onInitializationComplete(InitializationStatus initializationStatus) {
+                onComplete.run();
+            }
+        });
+    }
+
+    static AdLoader<InterstitialAd> interstitial(final Context context) {
+        return new AdLoader<InterstitialAd>() {
+            @Override
+            public void load(String adUnitId, final Callback<InterstitialAd> callback) {
+                InterstitialAd.load(context, adUnitId, AdRequestConfig.request(), new InterstitialAdLoadCallback() {
+                    @Override
+                    public void onAdLoaded(@NonNull InterstitialAd ad) {
+                        callback.onLoaded(ad);
+                    }
+
+                    @Override
+                    public void onAdFailedToLoad(@NonNull LoadAdError adError) {
+                        callback.onFailed(adError.getCode(), adError.getMessage());
+                    }
+                });
+            }
+        };
+    }
+
+    static AdLoader<RewardedAd> rewarded(final Context context) {
+        return new AdLoader<RewardedAd>() {
+            @Override
+            public void load(String adUnitId, final Callback<RewardedAd> callback) {
+                RewardedAd.load(context, adUnitId, AdRequestConfig.request(), new RewardedAdLoadCallback() {
+                    @Override
+                    public void onAdLoaded(@NonNull RewardedAd ad) {
+                        callback.onLoaded(ad);
+                    }
+
+                    @Override
+                    public void onAdFailedToLoad(@NonNull LoadAdError adError) {
+                        callback.onFailed(adError.getCode(), adError.getMessage());
+                    }
+                });
+            }
+        };
+    }
+
+    static AdLoader<AppOpenAd> appOpen(final Context context) {
+        return new AdLoader<AppOpenAd>() {
+            @Override
+            public void load(String adUnitId, final Callback<AppOpenAd> callback) {
+                AppOpenAd.load(context, adUnitId, AdRequestConfig.request(),
+                        AppOpenAd.APP_OPEN_AD_ORIENTATION_PORTRAIT, new AppOpenAd.AppOpenAdLoadCallback() {
+                    @Override
+                    public void onAdLoaded(@NonNull AppOpenAd ad) {
+                        callback.onLoaded(ad);
+                    }
+
+                    @Override
+                    public void onAdFailedToLoad(@NonNull LoadAdError adError) {
+                        callback.onFailed(adError.getCode(), adError.getMessage());
+                    }
+                });
+            }
+        };
+    }
+
+    static FullScreenSlot.Ads<InterstitialAd> interstitialAds() {
+        return new FullScreenSlot.Ads<InterstitialAd>() {
+            @Override
+            public String adUnitId(InterstitialAd ad) {
+                return ad.getAdUnitId();
+            }
+
+            @Override
+            public void attach(InterstitialAd ad, FullScreenContentCallback callback) {
+                ad.setFullScreenContentCallback(callback);
+            }
+
+            @Override
+            public void show(InterstitialAd ad, Activity activity) {
+                ad.show(activity);
+            }
+        };
+    }
+
+    static FullScreenSlot.Ads<RewardedAd> rewardedAds(final OnUserEarnedRewardListener rewardListener) {
+        return new FullScreenSlot.Ads<RewardedAd>() {
+            @Override
+            public String adUnitId(RewardedAd ad) {
+                return ad.getAdUnitId();
+            }
+
+            @Override
+            public void attach(RewardedAd ad, FullScreenContentCallback callback) {
+                ad.setFullScreenContentCallback(callback);
+            }
+
+            @Override
+            public void show(RewardedAd ad, Activity activity) {
+                ad.show(activity, rewardListener);
+            }
+        };
+    }
+
+    static FullScreenSlot.Ads<AppOpenAd> appOpenAds() {
+        return new FullScreenSlot.Ads<AppOpenAd>() {
+            @Override
+            public String adUnitId(AppOpenAd ad) {
+                return ad.getAdUnitId();
+            }
+
+            @Override
+            public void attach(AppOpenAd ad, FullScreenContentCallback callback) {
+                ad.setFullScreenContentCallback(callback);
+            }
+
+            @Override
+            public void show(AppOpenAd ad, Activity activity) {
+                ad.show(activity);
+            }
+        };
+    }
+
+    /**
+     * Loads into an existing banner view; the ad unit ID is the view's own.
+     * The last callback keeps hearing about the view, so loads the SDK makes
+     * on its own still reach the component.
+     */
+    static AdLoader<AdView> banner(final AdView view) {
+        return new AdLoader<AdView>() {
+            private volatile Callback<AdView> callback;
+
+            {
+                view.setAdListener(new AdListener() {
+                    @Override
+                    public void onAdLoaded() {
+                        Callback<AdView> current = callback;
+                        if (current != null) {
+                            current.onLoaded(view);
+                        }
+                    }
+
+                    @Override
+                    public void onAdFailedToLoad(@NonNull LoadAdError adError) {
+                        Callback<AdView> current = callback;
+                        if (current != null) {
+                            current.onFailed(adError.getCode(), adError.getMessage());
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void load(String adUnitId, Callback<AdView> callback) {
+                this.callback = callback;
+                view.loadAd(AdRequestConfig.request());
+            }
+        };
+    }
+}
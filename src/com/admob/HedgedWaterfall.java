@@ -0,0 +1,236 @@
+package com.admob;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hedged waterfall over an ordered list of ad unit IDs (best floor first).
+ *
+ * The first unit is requested right away. If it has not answered within
+ * the hedge delay, or as soon as it fails, the next unit is requested too,
+ * and so on down the list. The result kept is the best-ranked unit that
+ * filled: a lower-ranked fill waits up to one more hedge delay for
+ * better-ranked requests still in flight, then wins. Every other result is
+ * dropped.
+ *
+ * {@link #cancel()} ends every run still going: nothing more is requested
+ * and no listener hears back.
+ */
+final class HedgedWaterfall<A> {
+
+    static final long DEFAULT_HEDGE_DELAY_MS = 1500;
+
+    interface Listener<A> {
+        void onLoaded(A ad, String adUnitId);
+
+        void onFailed(String message);
+    }
+
+    interface Timer {
+        void schedule(Runnable task, long delayMs);
+
+        void cancel(Runnable task);
+    }
+
+    private final AdLoader<A> loader;
+    private final Timer timer;
+    private final List<Run> active = new ArrayList<>();
+    private volatile long hedgeDelayMs = DEFAULT_HEDGE_DELAY_MS;
+
+    HedgedWaterfall(AdLoader<A> loader, Timer timer) {
+        this.loader = loader;
+        this.timer = timer;
+    }
+
+    void setHedgeDelay(long delayMs) {
+        hedgeDelayMs = Math.max(0, delayMs);
+    }
+
+    /** Starts one waterfall over {@code adUnitIds}; {@code listener} hears exactly once. */
+    void run(String[] adUnitIds, Listener<A> listener) {
+        run(adUnitIds, loader, listener);
+    }
+
+    /** As {@link #run(String[], Listener)}, sending each unit request through {@code via}. */
+    void run(String[] adUnitIds, AdLoader<A> via, Listener<A> listener) {
+        Run run = new Run(adUnitIds, via, listener, hedgeDelayMs);
+        synchronized (active) {
+            active.add(run);
+        }
+        run.launchNext();
+    }
+
+    /** Ends every run in flight; their listeners never hear back, and late answers are dropped. */
+    void cancel() {
+        List<Run> runs;
+        synchronized (active) {
+            runs = new ArrayList<>(active);
+            active.clear();
+        }
+        for (Run run : runs) {
+            run.cancel();
+        }
+    }
+
+    private void ended(Run run) {
+        synchronized (active) {
+            active.remove(run);
+        }
+    }
+
+    private static final int PENDING = 0;
+    private static final int FAILED = 1;
+    private static final int FILLED = 2;
+
+    private final class Run {
+        final String[] units;
+        final AdLoader<A> loader;
+        final Listener<A> listener;
+        final long hedgeDelayMs;
+        final int[] outcome;
+        final Object[] ads;
+        int launched;
+        boolean done;
+        boolean settleScheduled;
+        String lastError = "No ad unit ID set";
+
+        final Runnable hedgeTask = new Runnable() {
+            @Override
+            public void run() {
+                launchNext();
+            }
+        };
+
+        final Runnable settleTask = new Runnable() {
+            @Override
+            public void run() {
+                settle(true);
+            }
+        };
+
+        Run(String[] units, AdLoader<A> loader, Listener<A> listener, long hedgeDelayMs) {
+            this.units = units;
+            this.loader = loader;
+            this.listener = listener;
+            this.hedgeDelayMs = hedgeDelayMs;
+            this.outcome = new int[units.length];
+            this.ads = new Object[units.length];
+        }
+
+        void launchNext() {
+            final int index;
+            synchronized (this) {
+                if (done || launched >= units.length) {
+                    if (!done && launched == 0) {
+                        done = true;
+                        ended(this);
+                        listener.onFailed(lastError);
+                    }
+                    return;
+                }
+                index = launched++;
+            }
+            if (index + 1 < units.length) {
+                timer.schedule(hedgeTask, hedgeDelayMs);
+            }
+            loader.load(units[index], new AdLoader.Callback<A>() {
+                @Override
+                public void onLoaded(A ad) {
+                    synchronized (Run.this) {
+                        if (done) {
+                            // Cancelled or already settled; this fill is dropped.
+                            return;
+                        }
+                        outcome[index] = FILLED;
+                        ads[index] = ad;
+                    }
+                    settle(false);
+                }
+
+                @Override
+                public void onFailed(int code, String message) {
+                    boolean hedgeNow;
+                    synchronized (Run.this) {
+                        outcome[index] = FAILED;
+                        lastError = message;
+                        hedgeNow = !done && index == launched - 1;
+                    }
+                    if (hedgeNow) {
+                        // The newest request failed; don't wait out the hedge delay.
+                        timer.cancel(hedgeTask);
+                        launchNext();
+                    }
+                    settle(false);
+                }
+            });
+        }
+
+        void cancel() {
+            synchronized (this) {
+                done = true;
+                for (int i = 0; i < ads.length; i++) {
+                    ads[i] = null;
+                }
+            }
+            timer.cancel(hedgeTask);
+            timer.cancel(settleTask);
+        }
+
+        /**
+         * Delivers the best fill once every better-ranked unit has failed,
+         * or when {@code force} is set after the extra wait has passed.
+         */
+        @SuppressWarnings("unchecked")
+        void settle(boolean force) {
+            A winner = null;
+            String winnerUnit = null;
+            boolean failedAll = false;
+            boolean waitForBetter = false;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                boolean betterPending = false;
+                for (int i = 0; i < launched; i++) {
+                    if (outcome[i] == FILLED) {
+                        if (betterPending && !force) {
+                            waitForBetter = !settleScheduled;
+                            settleScheduled = true;
+                        } else {
+                            winner = (A) ads[i];
+                            winnerUnit = units[i];
+                        }
+                        break;
+                    }
+                    if (outcome[i] == PENDING) {
+                        betterPending = true;
+                    }
+                }
+                if (winner == null && !waitForBetter && !betterPending && launched == units.length) {
+                    failedAll = true;
+                }
+                if (winner != null || failedAll) {
+                    done = true;
+                    ended(this);
+                    // Losing fills are simply not referenced again.
+                    for (int i = 0; i < ads.length; i++) {
+                        ads[i] = null;
+                    }
+                }
+            }
+            if (waitForBetter) {
+                timer.cancel(hedgeTask);
+                timer.schedule(settleTask, hedgeDelayMs);
+                return;
+            }
+            if (winner != null) {
+                timer.cancel(hedgeTask);
+                timer.cancel(settleTask);
+                listener.onLoaded(winner, winnerUnit);
+            } else if (failedAll) {
+                timer.cancel(settleTask);
+                listener.onFailed(lastError);
+            }
+        }
+    }
+}
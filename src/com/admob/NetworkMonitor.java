@@ -0,0 +1,156 @@
+package com.admob;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide view of the default network, using the
+ * ACCESS_NETWORK_STATE permission every component already declares.
+ *
+ * The network is classed as offline, constrained (metered, or too slow to
+ * prefetch freely) or unmetered. Components check it before loading and
+ * listen for changes so they can hold loads while offline and resume, or
+ * warm their caches, as soon as the class improves. Listeners are called on
+ * the main thread. If the connectivity service cannot be read the network
+ * is reported as unmetered, so ads never stop loading because of this class.
+ */
+final class NetworkMonitor {
+
+    static final int OFFLINE = 0;
+    static final int CONSTRAINED = 1;
+    static final int UNMETERED = 2;
+
+    private static final String[] NAMES = {"offline", "constrained", "unmetered"};
+    private static final String TAG = "AdMobNetwork";
+
+    /** Below this estimated downstream bandwidth a network is treated as constrained. */
+    private static final int SLOW_KBPS = 1000;
+
+    interface Listener {
+        void onNetworkChanged(int type);
+    }
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static volatile int type = UNMETERED;
+    private static ConnectivityManager connectivity;
+
+    private NetworkMonitor() {
+    }
+
+    /** Starts watching the network; only the first call does anything. */
+    static synchronized void attach(Context context) {
+        if (connectivity != null) {
+            return;
+        }
+        Context app = context.getApplicationContext();
+        connectivity = (ConnectivityManager) app.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) {
+            return;
+        }
+        try {
+            update(classify());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                connectivity.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onAvailable(Network network) {
+                        update(classify());
+                    }
+
+                    @Override
+                    public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                        update(classify(capabilities));
+                    }
+
+                    @Override
+                    public void onLost(Network network) {
+                        update(OFFLINE);
+                    }
+                });
+            } else {
+                app.registerReceiver(new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context c, Intent intent) {
+                        update(classify());
+                    }
+                }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+            }
+        } catch (RuntimeException e) {
+            // Missing permission or a vendor quirk: fall back to assuming the network is fine.
+            AdLog.w(TAG, "Network monitoring unavailable: ", e.getMessage());
+            update(UNMETERED);
+        }
+    }
+
+    static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    static boolean isOffline() {
+        return type == OFFLINE;
+    }
+
+    static boolean isConstrained() {
+        return type == CONSTRAINED;
+    }
+
+    static String name() {
+        return NAMES[type];
+    }
+
+    private static void update(final int next) {
+        if (type == next) {
+            return;
+        }
+        type = next;
+        AdLog.i(TAG, "Network is now ", NAMES[next]);
+        AdTrace.record("network", NAMES[next], null);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : listeners) {
+                    listener.onNetworkChanged(next);
+                }
+            }
+        });
+    }
+
+    private static int classify() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network network = connectivity.getActiveNetwork();
+            return network == null ? OFFLINE : classify(connectivity.getNetworkCapabilities(network));
+        }
+        NetworkInfo info = connectivity.getActiveNetworkInfo();
+        if (info == null || !info.isConnected()) {
+            return OFFLINE;
+        }
+        return connectivity.isActiveNetworkMetered() ? CONSTRAINED : UNMETERED;
+    }
+
+    private static int classify(NetworkCapabilities capabilities) {
+        if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+            return OFFLINE;
+        }
+        int kbps = capabilities.getLinkDownstreamBandwidthKbps();
+        if (!capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)
+                || (kbps > 0 && kbps < SLOW_KBPS)) {
+            return CONSTRAINED;
+        }
+        return UNMETERED;
+    }
+}
@@ -0,0 +1,92 @@
+package com.admob;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter plus a circuit breaker for ad loads.
+ *
+ * Each failure doubles the wait before the next attempt (capped at
+ * {@code maxDelayMs}), with half of the wait randomised so many devices
+ * do not retry in lockstep. After {@code breakerThreshold} consecutive
+ * failures the breaker opens and no request is allowed until the
+ * cool-down has passed; the first request after that is a probe, and
+ * another failure opens the breaker again straight away.
+ */
+final class RetryPolicy {
+
+    private final Random random = new Random();
+
+    private int maxRetries = 5;
+    private long baseDelayMs = 1000;
+    private long maxDelayMs = 60000;
+    private int breakerThreshold = 5;
+    private long breakerCooldownMs = 5 * 60 * 1000;
+
+    private int attempt;
+    private int consecutiveFailures;
+    private long nextAttemptAt;
+    private long openUntil;
+
+    synchronized void configure(int maxRetries, long baseDelayMs, long maxDelayMs) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMs = Math.max(1, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    synchronized void configureBreaker(int threshold, long cooldownMs) {
+        this.breakerThreshold = Math.max(1, threshold);
+        this.breakerCooldownMs = Math.max(0, cooldownMs);
+    }
+
+    /** Milliseconds until a request is allowed again, 0 if one is allowed now. */
+    synchronized long waitMs() {
+        long now = AdPreloadPool.now();
+        long until = Math.max(nextAttemptAt, openUntil);
+        return until > now ? until - now : 0;
+    }
+
+    synchronized void onSuccess() {
+        reset();
+    }
+
+    /** Forgets all failures, e.g. when they were caused by a network that has since come back. */
+    synchronized void reset() {
+        attempt = 0;
+        consecutiveFailures = 0;
+        nextAttemptAt = 0;
+        openUntil = 0;
+    }
+
+    /**
+     * Records a failed load and returns how long to wait before retrying,
+     * or -1 when the retry budget is spent and no automatic retry should be
+     * made. While the breaker is open the returned wait is its cool-down.
+     */
+    synchronized long onFailure() {
+        long now = AdPreloadPool.now();
+        consecutiveFailures++;
+        if (consecutiveFailures >= breakerThreshold) {
+            openUntil = now + breakerCooldownMs;
+            attempt = 0;
+            return breakerCooldownMs;
+        }
+        if (attempt >= maxRetries) {
+            attempt = 0;
+            return -1;
+        }
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 30));
+        long half = ceiling / 2;
+        long delay = half + (long) (random.nextDouble() * (ceiling - half));
+        attempt++;
+        nextAttemptAt = now + delay;
+        return delay;
+    }
+
+    synchronized int attempt() {
+        return attempt;
+    }
+
+    synchronized boolean isOpen() {
+        return openUntil > AdPreloadPool.now();
+    }
+}
@@ -0,0 +1,384 @@
+package com.admob;
+
+import android.content.Context;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Durable record of rewards granted by rewarded ads.
+ *
+ * Every grant gets a unique ID and is appended to a log file as a
+ * "G" line; acknowledging it appends an "A" line. Replaying the log at
+ * start-up yields the grants the app has not acknowledged yet, so a reward
+ * earned just before the process died is still there on the next run, and
+ * an acknowledged one is never handed out again. Each line ends with a
+ * CRC32 of its contents, and a line cut short by a crash mid-append is
+ * trimmed off before the next run appends, so neither it nor the lines
+ * after it are misread.
+ *
+ * {@link #record} only updates memory and queues the line, so the SDK's
+ * reward callback never waits on storage. A single I/O thread drains the
+ * queue, appending everything queued so far with one fsync per batch. A
+ * batch is always appended before any compaction, so a failed rewrite can
+ * never lose a grant, and a batch that cannot be written stays queued and
+ * is tried again.
+ */
+final class RewardLedger {
+
+    interface Listener {
+        /** Called on the I/O thread once the saved log has been replayed. */
+        void onLoaded(int pending);
+    }
+
+    static final class Reward {
+        final String id;
+        final String type;
+        final int amount;
+        final long earnedAt;
+
+        Reward(String id, String type, int amount, long earnedAt) {
+            this.id = id;
+            this.type = type;
+            this.amount = amount;
+            this.earnedAt = earnedAt;
+        }
+    }
+
+    private static final String TAG = "AdMobRewardLedger";
+    private static final String FILE_NAME = "admob_rewards.log";
+    /** Once this many acknowledged lines pile up the log is rewritten with only the pending grants. */
+    private static final int COMPACT_AFTER = 256;
+    /** A batch that could not be written is tried again after this long. */
+    private static final long WRITE_RETRY_MS = 5000;
+
+    private static final Object lock = new Object();
+    private static final Map<String, Reward> pending = new LinkedHashMap<>();
+    private static final List<String> queued = new ArrayList<>();
+    private static final AtomicInteger sequence = new AtomicInteger();
+    private static final String session = Long.toString(System.currentTimeMillis(), 36)
+            + Integer.toString(new Random().nextInt() & 0xfffff, 36);
+
+    private static ScheduledExecutorService io;
+    private static File file;
+    private static boolean drainScheduled;
+    private static int acknowledgedLines;
+
+    private RewardLedger() {
+    }
+
+    /** Opens the ledger and replays it in the background; later calls just report the pending count again. */
+    static void open(final Context context, final Listener listener) {
+        synchronized (lock) {
+            if (io != null) {
+                io.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onLoaded(pendingCount());
+                    }
+                });
+                return;
+            }
+            io = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                File target = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+                trimTornTail(target);
+                replay(target);
+                synchronized (lock) {
+                    file = target;
+                    if (!queued.isEmpty()) {
+                        scheduleDrain();
+                    }
+                }
+                listener.onLoaded(pendingCount());
+            }
+        });
+    }
+
+    /** Records a grant and returns its ID. Never blocks on storage. */
+    static String record(String type, int amount) {
+        String id = session + "-" + sequence.incrementAndGet();
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            pending.put(id, new Reward(id, type, amount, now));
+            queued.add(seal("G " + id + " " + now + " " + amount + " " + escape(type)));
+            scheduleDrain();
+        }
+        return id;
+    }
+
+    /** Marks a grant as handled; returns false if the ID is unknown or was already acknowledged. */
+    static boolean acknowledge(String id) {
+        synchronized (lock) {
+            if (pending.remove(id) == null) {
+                return false;
+            }
+            queued.add(seal("A " + id));
+            scheduleDrain();
+            return true;
+        }
+    }
+
+    static List<Reward> pending() {
+        synchronized (lock) {
+            return new ArrayList<>(pending.values());
+        }
+    }
+
+    static int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private static void scheduleDrain() {
+        // Callers hold the lock.
+        if (io == null || drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        io.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        });
+    }
+
+    private static void drain() {
+        List<String> batch;
+        File target;
+        synchronized (lock) {
+            drainScheduled = false;
+            batch = new ArrayList<>(queued);
+            queued.clear();
+            target = file;
+        }
+        if (target == null || batch.isEmpty()) {
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        int acks = 0;
+        for (String line : batch) {
+            out.append(line).append('\n');
+            if (line.startsWith("A ")) {
+                acks++;
+            }
+        }
+        try {
+            write(target, out.toString(), true);
+        } catch (IOException e) {
+            AdLog.e(TAG, "Could not save rewards: ", e.getMessage());
+            synchronized (lock) {
+                // Keep the lines, ahead of anything queued since, and try again shortly.
+                queued.addAll(0, batch);
+                if (!drainScheduled) {
+                    drainScheduled = true;
+                    io.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            drain();
+                        }
+                    }, WRITE_RETRY_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+            return;
+        }
+        boolean compact;
+        synchronized (lock) {
+            acknowledgedLines += acks;
+            compact = acknowledgedLines >= COMPACT_AFTER;
+        }
+        if (compact) {
+            compact(target);
+        }
+    }
+
+    /** Rewrites the log with only the pending grants; on failure the appended log stays as it is. */
+    private static void compact(File target) {
+        StringBuilder out = new StringBuilder();
+        synchronized (lock) {
+            for (Reward reward : pending.values()) {
+                out.append(seal("G " + reward.id + " " + reward.earnedAt + " " + reward.amount + " "
+                        + escape(reward.type))).append('\n');
+            }
+        }
+        File tmp = new File(target.getPath() + ".tmp");
+        try {
+            write(tmp, out.toString(), false);
+            if (!tmp.renameTo(target)) {
+                tmp.delete();
+                AdLog.w(TAG, "Could not compact the reward ledger");
+                return;
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            AdLog.w(TAG, "Could not compact the reward ledger: ", e.getMessage());
+            return;
+        }
+        synchronized (lock) {
+            acknowledgedLines = 0;
+        }
+    }
+
+    private static void write(File target, String text, boolean append) throws IOException {
+        FileOutputStream stream = new FileOutputStream(target, append);
+        try {
+            stream.write(text.getBytes("UTF-8"));
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+    }
+
+    static void replay(File source) {
+        if (!source.exists()) {
+            return;
+        }
+        Map<String, Reward> saved = new LinkedHashMap<>();
+        int acks = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String body = unseal(line);
+                    if (body == null) {
+                        // Damaged on disk; the checksum keeps it from being read as a valid grant.
+                        continue;
+                    }
+                    String[] parts = body.split(" ", 5);
+                    if (parts.length == 5 && parts[0].equals("G")) {
+                        try {
+                            saved.put(parts[1], new Reward(parts[1], unescape(parts[4]),
+                                    Integer.parseInt(parts[3]), Long.parseLong(parts[2])));
+                        } catch (NumberFormatException e) {
+                            // Checksummed but malformed; nothing sensible to recover.
+                        }
+                    } else if (parts.length == 2 && parts[0].equals("A")) {
+                        saved.remove(parts[1]);
+                        acks++;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            AdLog.e(TAG, "Could not read saved rewards: ", e.getMessage());
+        }
+        synchronized (lock) {
+            // Grants recorded this run before the replay finished stay after the saved ones.
+            Map<String, Reward> merged = new LinkedHashMap<>(saved);
+            merged.putAll(pending);
+            pending.clear();
+            pending.putAll(merged);
+            acknowledgedLines = acks;
+        }
+    }
+
+    /**
+     * Cuts the file back to its last newline. A crash mid-append leaves a
+     * partial last line; without this the next append would be glued onto
+     * it and a fully written grant would be lost with the fragment.
+     */
+    static void trimTornTail(File target) {
+        if (!target.exists()) {
+            return;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(target, "rw");
+            try {
+                long end = raf.length();
+                while (end > 0) {
+                    raf.seek(end - 1);
+                    if (raf.read() == '\n') {
+                        break;
+                    }
+                    end--;
+                }
+                if (end < raf.length()) {
+                    raf.setLength(end);
+                    raf.getFD().sync();
+                    AdLog.w(TAG, "Dropped a partly written reward ledger line");
+                }
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            AdLog.e(TAG, "Could not check the reward ledger: ", e.getMessage());
+        }
+    }
+
+    /** Appends the CRC32 of {@code body}, so a line cut short can be told from a whole one. */
+    static String seal(String body) {
+        return body + " " + Long.toHexString(crc(body));
+    }
+
+    /** The line without its checksum, or null if the checksum is missing or does not match. */
+    static String unseal(String line) {
+        int space = line.lastIndexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        String body = line.substring(0, space);
+        try {
+            return Long.parseLong(line.substring(space + 1), 16) == crc(body) ? body : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long crc(String body) {
+        CRC32 crc = new CRC32();
+        try {
+            crc.update(body.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        return crc.getValue();
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 'n' ? '\n' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
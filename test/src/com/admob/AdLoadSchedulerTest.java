@@ -0,0 +1,93 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdLoadSchedulerTest {
+
+    private final List<AdLoadScheduler.Ticket> held = new ArrayList<>();
+    private final List<String> started = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        AdLoadScheduler.setMaxConcurrent(1);
+    }
+
+    @After
+    public void tearDown() {
+        // The queue is process-wide; hand everything back for the next test.
+        while (!held.isEmpty()) {
+            held.remove(0).finish();
+        }
+        AdLoadScheduler.setMaxConcurrent(2);
+    }
+
+    private AdLoadScheduler.Task hold(final String name) {
+        return new AdLoadScheduler.Task() {
+            @Override
+            public void start(AdLoadScheduler.Ticket ticket) {
+                started.add(name);
+                held.add(ticket);
+            }
+        };
+    }
+
+    private final AdLoadScheduler.Task finishAtOnce = new AdLoadScheduler.Task() {
+        @Override
+        public void start(AdLoadScheduler.Ticket ticket) {
+            started.add("sync");
+            ticket.finish();
+        }
+    };
+
+    @Test
+    public void loadsBeyondTheCapWait() {
+        AdLoadScheduler.setMaxConcurrent(2);
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_INTERSTITIAL, false, hold("a"));
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_INTERSTITIAL, false, hold("b"));
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_INTERSTITIAL, false, hold("c"));
+        assertEquals(2, AdLoadScheduler.inFlightCount());
+        assertEquals(1, AdLoadScheduler.queuedCount());
+        held.remove(0).finish();
+        assertEquals(3, started.size());
+        assertEquals(0, AdLoadScheduler.queuedCount());
+    }
+
+    @Test
+    public void queuedLoadsStartByPriority() {
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_BANNER, false, hold("first"));
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_BANNER, false, hold("banner"));
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_APP_OPEN, false, hold("appOpen"));
+        held.remove(0).finish();
+        assertEquals("appOpen", started.get(1));
+    }
+
+    @Test
+    public void preloadsWaitForHigherPriorityLoads() {
+        AdLoadScheduler.setMaxConcurrent(2);
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_REWARDED, false, hold("rewarded"));
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_INTERSTITIAL, true, hold("preload"));
+        assertEquals(1, started.size());
+        held.remove(0).finish();
+        assertEquals("preload", started.get(1));
+    }
+
+    @Test
+    public void tasksFinishingInsideStartDoNotRecurse() {
+        AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_INTERSTITIAL, false, hold("blocker"));
+        int n = 100000;
+        for (int i = 0; i < n; i++) {
+            AdLoadScheduler.submit(AdLoadScheduler.PRIORITY_INTERSTITIAL, false, finishAtOnce);
+        }
+        assertEquals(n, AdLoadScheduler.queuedCount());
+        held.remove(0).finish();
+        assertEquals(n + 1, started.size());
+        assertEquals(0, AdLoadScheduler.queuedCount());
+        assertEquals(0, AdLoadScheduler.inFlightCount());
+    }
+}
@@ -0,0 +1,160 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdPreloadPoolTest {
+
+    /** The pool reads the real monotonic clock, so expiry tests use a short validity window and sleep past it. */
+    private static final long TTL_MS = 200;
+
+    private int loads;
+    private AdPreloadPool<String> pool;
+
+    @Before
+    public void setUp() {
+        loads = 0;
+        pool = new AdPreloadPool<>(TTL_MS, new AdPreloadPool.Loader<String>() {
+            @Override
+            public void load(AdPreloadPool<String> pool) {
+                loads++;
+            }
+        });
+    }
+
+    @Test
+    public void fillStartsOnlyWhatIsMissing() {
+        pool.setCapacity(3);
+        pool.fill();
+        assertEquals(3, loads);
+        assertEquals(3, pool.inFlight());
+        // Loads in flight count toward capacity, so a second fill starts nothing.
+        pool.fill();
+        assertEquals(3, loads);
+
+        pool.offer("a");
+        pool.loadFailed();
+        assertEquals(1, pool.size());
+        assertEquals(1, pool.inFlight());
+        pool.fill();
+        assertEquals(4, loads);
+        assertEquals(2, pool.inFlight());
+    }
+
+    @Test
+    public void fillLimitCountsReadyAndInFlight() {
+        pool.setCapacity(4);
+        pool.fill(2);
+        assertEquals(2, loads);
+        pool.offer("a");
+        // One ready and one loading already make two.
+        pool.fill(2);
+        assertEquals(2, loads);
+        pool.fill(3);
+        assertEquals(3, loads);
+        // A limit above capacity is capped by it.
+        pool.fill(10);
+        assertEquals(4, loads);
+        assertEquals(3, pool.inFlight());
+    }
+
+    @Test
+    public void fillLimitKeepsAdsAlreadyLoaded() {
+        pool.setCapacity(3);
+        pool.fill();
+        pool.offer("a");
+        pool.offer("b");
+        pool.offer("c");
+        pool.fill(1);
+        assertEquals(3, pool.size());
+        assertEquals(3, loads);
+    }
+
+    @Test
+    public void loadFailedWithNothingInFlightDoesNotGoNegative() {
+        pool.loadFailed();
+        assertEquals(0, pool.inFlight());
+        pool.fill();
+        assertEquals(1, loads);
+    }
+
+    @Test
+    public void pollServesTheOldestFirst() {
+        pool.setCapacity(2);
+        pool.fill();
+        pool.offer("a");
+        pool.offer("b");
+        assertEquals("a", pool.poll());
+        assertEquals("b", pool.poll());
+        assertNull(pool.poll());
+    }
+
+    @Test
+    public void expiredAdsAreEvictedAndRefilled() throws InterruptedException {
+        pool.fill();
+        pool.offer("a");
+        assertEquals(1, pool.size());
+        Thread.sleep(TTL_MS + 50);
+        assertEquals(0, pool.size());
+        assertNull(pool.poll());
+        assertEquals(Long.MAX_VALUE, pool.oldestLoadedAt());
+        pool.fill();
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void nextExpiryInTracksTheOldestAd() throws InterruptedException {
+        assertEquals(-1, pool.nextExpiryIn());
+        pool.setCapacity(2);
+        pool.fill();
+        pool.offer("a");
+        long first = pool.nextExpiryIn();
+        assertTrue("expires in " + first, first > TTL_MS / 2 && first <= TTL_MS);
+        Thread.sleep(TTL_MS / 2);
+        pool.offer("b");
+        // Still the first ad's expiry, now about half a window away.
+        long second = pool.nextExpiryIn();
+        assertTrue("expires in " + second, second < first && second <= TTL_MS / 2);
+        pool.poll();
+        assertTrue(pool.nextExpiryIn() > second);
+        Thread.sleep(TTL_MS + 50);
+        assertEquals(-1, pool.nextExpiryIn());
+    }
+
+    @Test
+    public void evictOldestDropsOneAndNotifies() {
+        final int[] evictions = new int[1];
+        pool.setEvictionListener(new Runnable() {
+            @Override
+            public void run() {
+                evictions[0]++;
+            }
+        });
+        pool.setCapacity(2);
+        pool.fill();
+        pool.offer("a");
+        pool.offer("b");
+        assertTrue(pool.evictOldest());
+        assertEquals(1, evictions[0]);
+        assertEquals("b", pool.poll());
+        assertFalse(pool.evictOldest());
+        assertEquals(1, evictions[0]);
+    }
+
+    @Test
+    public void shrinkingCapacityDropsTheNewest() {
+        pool.setCapacity(3);
+        pool.fill();
+        pool.offer("a");
+        pool.offer("b");
+        pool.offer("c");
+        pool.setCapacity(1);
+        assertEquals(1, pool.size());
+        assertEquals("a", pool.poll());
+    }
+}
@@ -0,0 +1,79 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdSlotStateTest {
+
+    private static final int[] ALL = {
+            AdSlotState.IDLE, AdSlotState.LOADING, AdSlotState.LOADED, AdSlotState.SHOWING};
+
+    /** LEGAL[from][to] as documented: loads start from IDLE or LOADED, shows only from LOADED. */
+    private static final boolean[][] EXPECTED = {
+            {false, true, true, false},
+            {true, false, true, false},
+            {true, true, false, true},
+            {true, false, true, false},
+    };
+
+    private static AdSlotState at(int state) {
+        AdSlotState slot = new AdSlotState();
+        switch (state) {
+            case AdSlotState.LOADING:
+                slot.settle(0, 1);
+                break;
+            case AdSlotState.LOADED:
+                slot.settle(1, 0);
+                break;
+            case AdSlotState.SHOWING:
+                slot.settle(1, 0);
+                slot.transition(AdSlotState.LOADED, AdSlotState.SHOWING);
+                break;
+            default:
+                break;
+        }
+        assertEquals(state, slot.get());
+        return slot;
+    }
+
+    @Test
+    public void transitionsFollowTheTable() {
+        for (int from : ALL) {
+            for (int to : ALL) {
+                AdSlotState slot = at(from);
+                assertEquals(from + " -> " + to, EXPECTED[from][to], slot.transition(from, to));
+                assertEquals(EXPECTED[from][to] ? to : from, slot.get());
+            }
+        }
+    }
+
+    @Test
+    public void transitionFromAStaleStateFails() {
+        AdSlotState slot = at(AdSlotState.LOADING);
+        assertFalse(slot.transition(AdSlotState.LOADED, AdSlotState.SHOWING));
+        assertTrue(slot.is(AdSlotState.LOADING));
+    }
+
+    @Test
+    public void settleDerivesFromTheCache() {
+        AdSlotState slot = new AdSlotState();
+        slot.settle(0, 2);
+        assertEquals("LOADING", slot.name());
+        slot.settle(1, 1);
+        assertEquals("LOADED", slot.name());
+        slot.settle(0, 0);
+        assertEquals("IDLE", slot.name());
+    }
+
+    @Test
+    public void settleLeavesAShowAloneUntilItEnds() {
+        AdSlotState slot = at(AdSlotState.SHOWING);
+        slot.settle(0, 0);
+        assertTrue(slot.is(AdSlotState.SHOWING));
+        slot.endShow(0, 1);
+        assertTrue(slot.is(AdSlotState.LOADING));
+    }
+}
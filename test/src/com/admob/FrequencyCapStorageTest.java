@@ -0,0 +1,91 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Drives the frequency cap's own I/O thread; the history attaches once per process, so this is one story. */
+public class FrequencyCapStorageTest {
+
+    private static final long DAY = 24L * 60L * 60L * 1000L;
+
+    private static List<String> lines(File file) throws IOException {
+        List<String> out = new ArrayList<>();
+        if (!file.exists()) {
+            return out;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return out;
+    }
+
+    @Test
+    public void savedHistoryMergesOnAttachAndIsWrittenBack() throws Exception {
+        final File dir = File.createTempFile("frequency", "");
+        dir.delete();
+        dir.mkdir();
+        File history = new File(dir, "admob_frequency_cap");
+        long now = System.currentTimeMillis();
+        long saved = now - 5000;
+        long stale = now - 2 * DAY;
+        Writer writer = new FileWriter(history);
+        try {
+            writer.write("merged " + saved + "\n");
+            writer.write("merged " + stale + "\n");
+            writer.write("garbage line\n");
+        } finally {
+            writer.close();
+        }
+
+        // Shown this run before the saved history is read; the merge must keep both.
+        FrequencyCap.recordShow("merged");
+        FrequencyCap.attach(new Context() {
+            @Override
+            public File getFilesDir() {
+                return dir;
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (FrequencyCap.showsInLastDay("merged") != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, FrequencyCap.showsInLastDay("merged"));
+
+        // The interval runs from this run's show, not the older saved one that was read in after it.
+        FrequencyCap.setMinInterval("merged", 60000);
+        long wait = FrequencyCap.waitMs("merged");
+        assertTrue("waited " + wait, wait > 59000 && wait <= 60000);
+
+        // The next show schedules a write of the whole day, without the stale or unreadable lines.
+        FrequencyCap.recordShow("merged");
+        deadline = System.currentTimeMillis() + 10000;
+        List<String> lines = lines(history);
+        while (lines.contains("garbage line") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            lines = lines(history);
+        }
+        assertEquals(3, lines.size());
+        assertEquals("merged " + saved, lines.get(0));
+        for (String line : lines) {
+            assertTrue(line, line.startsWith("merged "));
+            assertTrue(line, Long.parseLong(line.substring("merged ".length())) >= saved);
+        }
+    }
+}
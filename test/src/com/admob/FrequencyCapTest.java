@@ -0,0 +1,113 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class FrequencyCapTest {
+
+    private static final long WINDOW = 1000;
+    private static final long HOUR = 60L * 60L * 1000L;
+    private static final long DAY = 24L * HOUR;
+    /** Slack for the wall-clock time that passes between recording a show and checking it. */
+    private static final long SLACK = 1000;
+
+    private static ArrayDeque<Long> shows(Long... times) {
+        return new ArrayDeque<>(Arrays.asList(times));
+    }
+
+    @Test
+    public void underTheCapIsOpenNow() {
+        assertEquals(0, FrequencyCap.reopensAt(shows(100L, 200L), 3, 0, WINDOW));
+        assertEquals(0, FrequencyCap.reopensAt(shows(), 1, 0, WINDOW));
+    }
+
+    @Test
+    public void atTheCapReopensWhenTheOldestShowLeavesTheWindow() {
+        assertEquals(1100, FrequencyCap.reopensAt(shows(100L, 200L, 300L), 3, 0, WINDOW));
+    }
+
+    @Test
+    public void overTheCapWaitsForEnoughShowsToLeave() {
+        // Three shows against a cap of two: the second oldest must leave too.
+        assertEquals(1200, FrequencyCap.reopensAt(shows(100L, 200L, 300L), 2, 0, WINDOW));
+        assertEquals(1300, FrequencyCap.reopensAt(shows(100L, 200L, 300L), 1, 0, WINDOW));
+    }
+
+    @Test
+    public void showsOutsideTheWindowDoNotCount() {
+        assertEquals(1200, FrequencyCap.reopensAt(shows(100L, 200L, 300L), 2, 150, WINDOW));
+        // A show exactly at the window start has just left it.
+        assertEquals(0, FrequencyCap.reopensAt(shows(100L, 200L), 2, 100, WINDOW));
+    }
+
+    // The caps are process-wide, so each waitMs test below uses a format of its own.
+
+    private static void assertWaitsAbout(long expected, String format) {
+        long wait = FrequencyCap.waitMs(format);
+        assertTrue("waited " + wait + ", expected about " + expected, wait > expected - SLACK && wait <= expected);
+    }
+
+    @Test
+    public void noPolicyNeverWaits() {
+        FrequencyCap.recordShow("uncapped");
+        assertEquals(0, FrequencyCap.waitMs("uncapped"));
+        assertTrue(FrequencyCap.allowShow("uncapped"));
+    }
+
+    @Test
+    public void minimumIntervalRunsFromTheLastShow() {
+        FrequencyCap.setMinInterval("interval", 10000);
+        assertEquals(0, FrequencyCap.waitMs("interval"));
+        FrequencyCap.recordShow("interval");
+        assertWaitsAbout(10000, "interval");
+        assertFalse(FrequencyCap.allowShow("interval"));
+    }
+
+    @Test
+    public void hourlyCapWaitsForTheOldestShowToLeaveTheHour() {
+        FrequencyCap.setMaxPerHour("hourly", 2);
+        FrequencyCap.recordShow("hourly");
+        assertEquals(0, FrequencyCap.waitMs("hourly"));
+        FrequencyCap.recordShow("hourly");
+        assertWaitsAbout(HOUR, "hourly");
+        FrequencyCap.setMaxPerHour("hourly", 3);
+        assertEquals(0, FrequencyCap.waitMs("hourly"));
+    }
+
+    @Test
+    public void dailyCapWaitsForTheOldestShowToLeaveTheDay() {
+        FrequencyCap.setMaxPerDay("daily", 1);
+        FrequencyCap.recordShow("daily");
+        assertWaitsAbout(DAY, "daily");
+        assertEquals(1, FrequencyCap.showsInLastDay("daily"));
+        FrequencyCap.setMaxPerDay("daily", 0);
+        assertEquals(0, FrequencyCap.waitMs("daily"));
+    }
+
+    @Test
+    public void theLongestWaitWins() {
+        FrequencyCap.setMinInterval("combined", 5000);
+        FrequencyCap.setMaxPerHour("combined", 1);
+        FrequencyCap.recordShow("combined");
+        assertWaitsAbout(HOUR, "combined");
+    }
+
+    @Test
+    public void appOpenCooldownHoldsOnlyInterstitials() {
+        FrequencyCap.setAppOpenCooldown(30000);
+        try {
+            assertEquals(0, FrequencyCap.waitMs(AdMetrics.INTERSTITIAL));
+            FrequencyCap.recordShow(AdMetrics.APP_OPEN);
+            assertWaitsAbout(30000, AdMetrics.INTERSTITIAL);
+            assertEquals(0, FrequencyCap.waitMs(AdMetrics.REWARDED));
+            assertEquals(0, FrequencyCap.waitMs(AdMetrics.APP_OPEN));
+        } finally {
+            FrequencyCap.setAppOpenCooldown(0);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgedWaterfallTest {
+
+    private static final long HEDGE_MS = HedgedWaterfall.DEFAULT_HEDGE_DELAY_MS;
+
+    private ManualTimer timer;
+    private HedgedWaterfall<String> waterfall;
+    private Map<String, FakeAdLoader<String>> units;
+    private Recorder recorder;
+
+    /** Sends each unit to its own fake, so every unit can have its own latency and fill rate. */
+    private final AdLoader<String> byUnit = new AdLoader<String>() {
+        @Override
+        public void load(String adUnitId, Callback<String> callback) {
+            units.get(adUnitId).load(adUnitId, callback);
+        }
+    };
+
+    private static final class Recorder implements HedgedWaterfall.Listener<String> {
+        int calls;
+        String unit;
+        String error;
+
+        @Override
+        public void onLoaded(String ad, String adUnitId) {
+            calls++;
+            unit = adUnitId;
+        }
+
+        @Override
+        public void onFailed(String message) {
+            calls++;
+            error = message;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        timer = new ManualTimer();
+        waterfall = new HedgedWaterfall<>(byUnit, timer);
+        units = new HashMap<>();
+        recorder = new Recorder();
+    }
+
+    private void unit(String id, long latencyMs, boolean fills) {
+        units.put(id, new FakeAdLoader<>(new FakeAdLoader.Factory<String>() {
+            @Override
+            public String create(String adUnitId) {
+                return adUnitId;
+            }
+        }, timer, 1).latency(latencyMs).fillRate(fills ? 1.0 : 0.0));
+    }
+
+    private long loads(String id) {
+        return units.get(id).loads();
+    }
+
+    @Test
+    public void firstUnitFillingInTimeWinsAlone() {
+        unit("a", 500, true);
+        unit("b", 500, true);
+        waterfall.run(new String[] {"a", "b"}, recorder);
+        timer.advance(500);
+        assertEquals(1, recorder.calls);
+        assertEquals("a", recorder.unit);
+        assertEquals(0, loads("b"));
+        assertEquals(0, timer.pendingCount());
+    }
+
+    @Test
+    public void slowUnitIsHedgedAfterTheDelay() {
+        unit("a", 10 * HEDGE_MS, false);
+        unit("b", 100, true);
+        waterfall.run(new String[] {"a", "b"}, recorder);
+        timer.advance(HEDGE_MS - 1);
+        assertEquals(0, loads("b"));
+        timer.advance(1);
+        assertEquals(1, loads("b"));
+        // b filled but a is still pending and ranks higher, so the result waits.
+        timer.advance(100);
+        assertEquals(0, recorder.calls);
+        timer.advance(HEDGE_MS);
+        assertEquals(1, recorder.calls);
+        assertEquals("b", recorder.unit);
+    }
+
+    @Test
+    public void failureHedgesWithoutWaiting() {
+        unit("a", 100, false);
+        unit("b", 100, true);
+        waterfall.run(new String[] {"a", "b"}, recorder);
+        timer.advance(100);
+        assertEquals(1, loads("b"));
+        timer.advance(100);
+        assertEquals("b", recorder.unit);
+    }
+
+    @Test
+    public void betterFillArrivingDuringTheWaitWins() {
+        unit("a", HEDGE_MS + 1000, true);
+        unit("b", 100, true);
+        waterfall.run(new String[] {"a", "b"}, recorder);
+        timer.advance(HEDGE_MS + 100);
+        assertEquals(0, recorder.calls);
+        timer.advance(900);
+        assertEquals(1, recorder.calls);
+        assertEquals("a", recorder.unit);
+    }
+
+    @Test
+    public void everyUnitFailingReportsTheLastError() {
+        unit("a", 100, false);
+        unit("b", 100, false);
+        units.get("b").errorCode(9);
+        waterfall.run(new String[] {"a", "b"}, recorder);
+        timer.advance(10 * HEDGE_MS);
+        assertEquals(1, recorder.calls);
+        assertNull(recorder.unit);
+        assertEquals("No fill (fake error 9)", recorder.error);
+    }
+
+    @Test
+    public void emptyListFailsAtOnce() {
+        waterfall.run(new String[0], recorder);
+        assertEquals(1, recorder.calls);
+        assertNull(recorder.unit);
+    }
+
+    @Test
+    public void cancelStopsHedgesAndDropsLateAnswers() {
+        unit("a", 500, false);
+        unit("b", 500, true);
+        waterfall.run(new String[] {"a", "b"}, recorder);
+        timer.advance(100);
+        waterfall.cancel();
+        timer.advance(10 * HEDGE_MS);
+        assertEquals(0, recorder.calls);
+        assertEquals(0, loads("b"));
+        assertEquals(0, timer.pendingCount());
+    }
+}
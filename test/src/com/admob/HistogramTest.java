@@ -0,0 +1,62 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void smallValuesGetABucketEach() {
+        for (int v = 0; v < 16; v++) {
+            assertEquals(v, AdMetrics.Histogram.bucket(v));
+            assertEquals(v, AdMetrics.Histogram.midpoint(v));
+        }
+    }
+
+    @Test
+    public void bucketsGrowWithTheValueAndStayWithinAnEighth() {
+        int last = -1;
+        for (long v = 16; v < (1L << 40); v += 1 + v / 37) {
+            int bucket = AdMetrics.Histogram.bucket(v);
+            assertTrue("bucket went down at " + v, bucket >= last);
+            long error = Math.abs(AdMetrics.Histogram.midpoint(bucket) - v);
+            assertTrue("midpoint too far from " + v, error <= v / 8);
+            last = bucket;
+        }
+    }
+
+    @Test
+    public void powersOfTwoStartNewBuckets() {
+        for (int e = 4; e < 40; e++) {
+            long v = 1L << e;
+            assertEquals(AdMetrics.Histogram.bucket(v - 1) + 1, AdMetrics.Histogram.bucket(v));
+        }
+    }
+
+    @Test
+    public void hugeValuesLandInTheLastBucket() {
+        int top = AdMetrics.Histogram.bucket((1L << 40) - 1);
+        assertEquals(top, AdMetrics.Histogram.bucket(1L << 40));
+        assertEquals(top, AdMetrics.Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesComeFromTheBuckets() {
+        AdMetrics.Histogram histogram = new AdMetrics.Histogram();
+        assertEquals(-1, histogram.percentile(0.5));
+        for (int v = 1; v <= 1000; v++) {
+            histogram.record(v);
+        }
+        assertEquals(500, histogram.percentile(0.50), 500 / 8.0);
+        assertEquals(990, histogram.percentile(0.99), 990 / 8.0);
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        AdMetrics.Histogram histogram = new AdMetrics.Histogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.percentile(1.0));
+    }
+}
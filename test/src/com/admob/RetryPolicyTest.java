@@ -0,0 +1,73 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+    private RetryPolicy retry;
+
+    @Before
+    public void setUp() {
+        retry = new RetryPolicy();
+        retry.configure(5, 1000, 8000);
+        retry.configureBreaker(100, 60000);
+    }
+
+    @Test
+    public void backoffDoublesWithJitterUpToTheCap() {
+        long[] ceilings = {1000, 2000, 4000, 8000, 8000};
+        for (long ceiling : ceilings) {
+            long delay = retry.onFailure();
+            assertTrue("delay " + delay + " below half of " + ceiling, delay >= ceiling / 2);
+            assertTrue("delay " + delay + " above " + ceiling, delay <= ceiling);
+        }
+        assertEquals(5, retry.attempt());
+    }
+
+    @Test
+    public void spentBudgetStopsRetryingAndStartsOver() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(retry.onFailure() > 0);
+        }
+        assertEquals(-1, retry.onFailure());
+        assertEquals(0, retry.attempt());
+    }
+
+    @Test
+    public void failureHoldsRequestsBackUntilTheDelayPasses() {
+        assertEquals(0, retry.waitMs());
+        long delay = retry.onFailure();
+        long wait = retry.waitMs();
+        assertTrue(wait > 0 && wait <= delay);
+    }
+
+    @Test
+    public void breakerOpensAfterTheThresholdForTheCooldown() {
+        retry.configureBreaker(3, 60000);
+        retry.onFailure();
+        retry.onFailure();
+        assertFalse(retry.isOpen());
+        assertEquals(60000, retry.onFailure());
+        assertTrue(retry.isOpen());
+        assertTrue(retry.waitMs() > 30000);
+        // A failed probe reopens it straight away.
+        assertEquals(60000, retry.onFailure());
+    }
+
+    @Test
+    public void successResetsEverything() {
+        retry.configureBreaker(2, 60000);
+        retry.onFailure();
+        retry.onFailure();
+        retry.onSuccess();
+        assertFalse(retry.isOpen());
+        assertEquals(0, retry.attempt());
+        assertEquals(0, retry.waitMs());
+        assertTrue(retry.onFailure() <= 1000);
+    }
+}
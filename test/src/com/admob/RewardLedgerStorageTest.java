@@ -0,0 +1,99 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/** Drives the ledger's own I/O thread; the ledger opens once per process, so this is one story. */
+public class RewardLedgerStorageTest {
+
+    private static List<String> bodies(File file) throws IOException {
+        List<String> out = new ArrayList<>();
+        if (!file.exists()) {
+            return out;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.add(RewardLedger.unseal(line));
+            }
+        } finally {
+            reader.close();
+        }
+        return out;
+    }
+
+    private static List<String> awaitLine(File file, String prefix) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            List<String> lines = bodies(file);
+            for (String line : lines) {
+                if (line != null && line.startsWith(prefix)) {
+                    return lines;
+                }
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("no line starting with \"" + prefix + "\" in " + lines);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void grantsSurviveAFailedCompactionAndCompactLater() throws Exception {
+        final File dir = File.createTempFile("ledger", "");
+        dir.delete();
+        dir.mkdir();
+        File log = new File(dir, "admob_rewards.log");
+        File tmp = new File(dir, "admob_rewards.log.tmp");
+        // A directory where the rewrite goes makes compaction fail.
+        tmp.mkdir();
+
+        // Queued before open, so they all land in the first batch, which also crosses the compaction threshold.
+        for (int i = 0; i < 300; i++) {
+            RewardLedger.acknowledge(RewardLedger.record("coins", 1));
+        }
+        String kept = RewardLedger.record("gems", 7);
+
+        final CountDownLatch loaded = new CountDownLatch(1);
+        RewardLedger.open(new Context() {
+            @Override
+            public File getFilesDir() {
+                return dir;
+            }
+        }, new RewardLedger.Listener() {
+            @Override
+            public void onLoaded(int pending) {
+                loaded.countDown();
+            }
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+
+        List<String> lines = awaitLine(log, "G " + kept + " ");
+        assertEquals(601, lines.size());
+
+        // With the rewrite possible again, the next batch compacts down to what is still pending.
+        tmp.delete();
+        String next = RewardLedger.record("lives", 1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bodies(log).size() != 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        lines = bodies(log);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("G " + kept + " "));
+        assertTrue(lines.get(1).startsWith("G " + next + " "));
+    }
+}
@@ -0,0 +1,109 @@
+package com.admob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RewardLedgerTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("rewards", ".log");
+    }
+
+    @After
+    public void tearDown() {
+        // The ledger is process-wide; leave nothing pending for the next test.
+        for (RewardLedger.Reward reward : RewardLedger.pending()) {
+            RewardLedger.acknowledge(reward.id);
+        }
+        file.delete();
+    }
+
+    private void write(String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String line(String body) {
+        return RewardLedger.seal(body) + "\n";
+    }
+
+    private static List<String> pendingIds() {
+        List<String> ids = new ArrayList<>();
+        for (RewardLedger.Reward reward : RewardLedger.pending()) {
+            ids.add(reward.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void sealedLinesRoundTrip() {
+        assertEquals("G id 1 5 coins", RewardLedger.unseal(RewardLedger.seal("G id 1 5 coins")));
+        assertNull(RewardLedger.unseal("G id 1 5 coins"));
+        assertNull(RewardLedger.unseal(RewardLedger.seal("G id 1 5 coins").replace('5', '6')));
+    }
+
+    @Test
+    public void replayKeepsUnacknowledgedGrantsInOrder() throws IOException {
+        write(line("G a 1000 5 coins") + line("G b 2000 10 gems") + line("G c 3000 1 lives") + line("A b"));
+        RewardLedger.replay(file);
+        List<String> ids = pendingIds();
+        assertEquals(2, ids.size());
+        assertEquals("a", ids.get(0));
+        assertEquals("c", ids.get(1));
+        RewardLedger.Reward first = RewardLedger.pending().get(0);
+        assertEquals("coins", first.type);
+        assertEquals(5, first.amount);
+        assertEquals(1000, first.earnedAt);
+    }
+
+    @Test
+    public void escapedTypesSurviveReplay() throws IOException {
+        write(line("G a 1000 5 two\\nlines \\\\ slash"));
+        RewardLedger.replay(file);
+        assertEquals("two\nlines \\ slash", RewardLedger.pending().get(0).type);
+    }
+
+    @Test
+    public void damagedLinesAreSkipped() throws IOException {
+        write(line("G a 1000 5 coins") + "G b 2000 10 gems ffff\n" + "G c 30" + "\n" + line("G d 4000 1 lives"));
+        RewardLedger.replay(file);
+        List<String> ids = pendingIds();
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains("a"));
+        assertTrue(ids.contains("d"));
+    }
+
+    @Test
+    public void tornTailIsTrimmedBeforeReplay() throws IOException {
+        String whole = line("G a 1000 5 coins");
+        write(whole + "G b 2000 1");
+        RewardLedger.trimTornTail(file);
+        assertEquals(whole.length(), file.length());
+        RewardLedger.replay(file);
+        assertEquals(1, RewardLedger.pendingCount());
+    }
+
+    @Test
+    public void missingFileReplaysNothing() {
+        file.delete();
+        RewardLedger.replay(file);
+        assertEquals(0, RewardLedger.pendingCount());
+    }
+}
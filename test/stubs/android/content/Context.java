@@ -0,0 +1,13 @@
+package android.content;
+
+import java.io.File;
+
+/** Plain-JVM stand-in with just what the ledger and frequency cap ask of a context. */
+public abstract class Context {
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public abstract File getFilesDir();
+}
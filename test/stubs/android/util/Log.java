@@ -0,0 +1,36 @@
+package android.util;
+
+/** Plain-JVM stand-in for the Android logger, printing to standard error. */
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return print("D", tag, msg);
+    }
+
+    public static int i(String tag, String msg) {
+        return print("I", tag, msg);
+    }
+
+    public static int w(String tag, String msg) {
+        return print("W", tag, msg);
+    }
+
+    public static int e(String tag, String msg) {
+        return print("E", tag, msg);
+    }
+
+    private static int print(String level, String tag, String msg) {
+        System.err.println(level + "/" + tag + ": " + msg);
+        return 0;
+    }
+}